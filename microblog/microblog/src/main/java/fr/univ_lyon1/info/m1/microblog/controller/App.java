@@ -1,12 +1,19 @@
 package fr.univ_lyon1.info.m1.microblog.controller;
 
+import java.nio.file.Paths;
+import java.util.Arrays;
+
 import fr.univ_lyon1.info.m1.microblog.model.DataInitializer;
 import fr.univ_lyon1.info.m1.microblog.model.RedditAuth;
 import fr.univ_lyon1.info.m1.microblog.model.RedditPosts;
+import fr.univ_lyon1.info.m1.microblog.model.TranslationCache;
+import fr.univ_lyon1.info.m1.microblog.model.TranslationPrefetcher;
+import fr.univ_lyon1.info.m1.microblog.model.TranslationService;
 import fr.univ_lyon1.info.m1.microblog.model.Y;
 import fr.univ_lyon1.info.m1.microblog.view.JfxView;
 import fr.univ_lyon1.info.m1.microblog.view.LoginWindow;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.stage.Stage;
 
 /**
@@ -55,8 +62,25 @@ public class App extends Application {
         JfxView view2 = new JfxView();
         view2.initialize(secondStage, 600, 400);
 
-        // Create the main controller with both views
-        MainController controller = new MainController(model, view1, view2);
+        // Create the main controller with both views. It listens to the model:
+        // timelines affected by a change are scored and sorted in the
+        // background, the views are updated on the FX thread.
+        RenderScheduler renderScheduler = new RenderScheduler(
+            RenderScheduler.newRenderExecutor(), Platform::runLater);
+        MainController controller = new MainController(model,
+            Arrays.asList(view1, view2), renderScheduler);
+
+        // Les traductions sont partagées entre utilisateurs et conservées sur disque
+        TranslationCache translationCache = new TranslationCache(
+            TranslationCache.DEFAULT_MAX_CHARS,
+            Paths.get(System.getProperty("user.home"), ".y-microblog", "translations"));
+        controller.setTranslationService(new TranslationService(
+            TranslationService.DEFAULT_MAX_IN_FLIGHT, TranslationService.DEFAULT_TIMEOUT,
+            translationCache));
+        // Traduit en tâche de fond les messages visibles, pour répondre au clic
+        // sur "Traduire" depuis le cache
+        controller.enableTranslationPrefetch(TranslationPrefetcher.DEFAULT_BUDGET,
+            TranslationPrefetcher.DEFAULT_MAX_QUEUE);
 
         // Start the application
         controller.startApp();
@@ -0,0 +1,119 @@
+package fr.univ_lyon1.info.m1.microblog.controller;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import fr.univ_lyon1.info.m1.microblog.model.User;
+import fr.univ_lyon1.info.m1.microblog.view.IView;
+
+/**
+ * Records which user panes of which views are affected by the mutations of an
+ * event, so that the controller refreshes only those panes once the event has
+ * been handled, instead of re-rendering every user of every view. Dirty panes
+ * accumulate until {@link #clear()} is called; the model change is forgotten
+ * as soon as the listeners are notified (see {@link #clearModelChanged()}).
+ */
+public class ChangeTracker {
+
+    /**
+     * Users whose pane must be refreshed, for each view.
+     */
+    private final Map<IView, Set<User>> dirtyUsers = new HashMap<>();
+
+    /**
+     * Views in which every user pane must be refreshed.
+     */
+    private final Set<IView> dirtyViews = new HashSet<>();
+
+    /**
+     * Whether the model itself changed, so that its listeners must be notified.
+     */
+    private boolean modelChanged;
+
+    /**
+     * Marks the pane of a user as dirty in the given views.
+     *
+     * @param views the views displaying the user
+     * @param user the user whose timeline changed
+     */
+    public void markUser(final Collection<? extends IView> views, final User user) {
+        for (IView view : views) {
+            if (!dirtyViews.contains(view)) {
+                dirtyUsers.computeIfAbsent(view, k -> new HashSet<>()).add(user);
+            }
+        }
+    }
+
+    /**
+     * Marks every user pane of the given views as dirty, e.g. after a change
+     * that affects all timelines.
+     *
+     * @param views the views to refresh entirely
+     */
+    public void markAllUsers(final Collection<? extends IView> views) {
+        for (IView view : views) {
+            dirtyViews.add(view);
+            dirtyUsers.remove(view);
+        }
+    }
+
+    /**
+     * Records that the model changed during the event.
+     */
+    public void markModelChanged() {
+        modelChanged = true;
+    }
+
+    /**
+     * Forgets that the model changed, once its listeners have been notified.
+     * The dirty panes are kept until they are refreshed.
+     */
+    public void clearModelChanged() {
+        modelChanged = false;
+    }
+
+    /**
+     * Tells whether the model changed since the listeners were last notified.
+     *
+     * @return true if the model listeners must be notified
+     */
+    public boolean isModelChanged() {
+        return modelChanged;
+    }
+
+    /**
+     * Tells whether the pane of a user must be refreshed in a view.
+     *
+     * @param view the view
+     * @param user the user
+     * @return true if the pane is dirty
+     */
+    public boolean isDirty(final IView view, final User user) {
+        if (dirtyViews.contains(view)) {
+            return true;
+        }
+        Set<User> users = dirtyUsers.get(view);
+        return users != null && users.contains(user);
+    }
+
+    /**
+     * Tells whether no pane is dirty.
+     *
+     * @return true if nothing needs to be refreshed
+     */
+    public boolean isEmpty() {
+        return dirtyViews.isEmpty() && dirtyUsers.isEmpty();
+    }
+
+    /**
+     * Forgets all recorded changes, once they have been handled.
+     */
+    public void clear() {
+        dirtyUsers.clear();
+        dirtyViews.clear();
+        modelChanged = false;
+    }
+}
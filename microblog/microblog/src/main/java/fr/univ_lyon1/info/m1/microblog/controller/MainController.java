@@ -1,29 +1,40 @@
 package fr.univ_lyon1.info.m1.microblog.controller;
 
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
-import fr.univ_lyon1.info.m1.microblog.model.ApertiumApiClient;
-import fr.univ_lyon1.info.m1.microblog.model.BookmarkScoring;
 import fr.univ_lyon1.info.m1.microblog.model.ChronologicalStrategy;
 import fr.univ_lyon1.info.m1.microblog.model.DisplayStrategy;
+import fr.univ_lyon1.info.m1.microblog.model.IModelDeltaListener;
 import fr.univ_lyon1.info.m1.microblog.model.Message;
 import fr.univ_lyon1.info.m1.microblog.model.MessageData;
-import fr.univ_lyon1.info.m1.microblog.model.ScoreStrategy;
-import fr.univ_lyon1.info.m1.microblog.model.ScoreStrategyFactory;
+import fr.univ_lyon1.info.m1.microblog.model.IndexedBookmarkScoring;
+import fr.univ_lyon1.info.m1.microblog.model.LengthBasedScoring;
+import fr.univ_lyon1.info.m1.microblog.model.ModelChange;
+import fr.univ_lyon1.info.m1.microblog.model.RecentMessageBonusScoring;
+import fr.univ_lyon1.info.m1.microblog.model.ScoringPipeline;
 import fr.univ_lyon1.info.m1.microblog.model.TextMessage;
+import fr.univ_lyon1.info.m1.microblog.model.TimelinePage;
+import fr.univ_lyon1.info.m1.microblog.model.TranslationPrefetcher;
+import fr.univ_lyon1.info.m1.microblog.model.TranslationRoutePlanner;
+import fr.univ_lyon1.info.m1.microblog.model.TranslationService;
 import fr.univ_lyon1.info.m1.microblog.model.User;
 import fr.univ_lyon1.info.m1.microblog.model.Y;
+import fr.univ_lyon1.info.m1.microblog.view.IView;
 import fr.univ_lyon1.info.m1.microblog.view.JfxView;
 import fr.univ_lyon1.info.m1.microblog.view.JfxView.ViewListener;
-import javafx.scene.Node;
-import javafx.scene.control.Label;
-import javafx.scene.control.ScrollPane;
-import javafx.scene.layout.VBox;
 
 /**
  * The MainController class controls the interaction between the model and the
@@ -32,10 +43,25 @@ import javafx.scene.layout.VBox;
 public class MainController {
 
     private final Y model;
-    private final JfxView view1;
-    private final JfxView view2;
-    private final BookmarkScoring scoring;
+    private final List<IView> views = new ArrayList<>(); // Views showing the timelines
     private DisplayStrategy currentDisplayStrategy; // The current display strategy
+    private ScoringPipeline scoringPipeline; // Scoring stages, reused for every render
+    private final ChangeTracker changes = new ChangeTracker(); // Panes to refresh
+    private boolean started; // Whether startApp() created the users panes
+    private boolean handlingEvent; // Whether the model is changed by an event
+    private final RenderScheduler renderScheduler; // Where timelines are computed
+    private TranslationService translationService = new TranslationService();
+    private TranslationRoutePlanner translationPlanner =
+        new TranslationRoutePlanner(translationService);
+    private TranslationPrefetcher translationPrefetcher; // Null while prefetch is off
+    private final Map<User, String> nextCursors = new HashMap<>(); // Null after the last page
+    private final Map<User, Integer> shownCounts = new HashMap<>(); // Messages shown per user
+    private final Set<User> pendingLoads = new LinkedHashSet<>(); // Users awaiting a page
+    private final Map<User, Set<Message>> shownMessages = new HashMap<>(); // Rendered, per user
+    private final TimelineCache timelineCache = new TimelineCache(); // Timelines already computed
+
+    // Langue dans laquelle les messages sont écrits
+    private static final String MESSAGE_LANGUAGE = "eng";
 
     // Add a score threshold constant or a field
     private static final int SCORE_THRESHOLD = 0; // Only show messages with scores > 0
@@ -48,95 +74,209 @@ public class MainController {
      * @param view2 the second view instance
      */
     public MainController(final Y model, final JfxView view1, final JfxView view2) {
+        this(model, Arrays.asList(view1, view2));
+    }
+
+    /**
+     * Constructor to initialize the controller with any number of views. Each
+     * user's timeline is computed once and the same result is given to every
+     * view.
+     *
+     * @param model the model instance
+     * @param views the views showing the timelines
+     */
+    public MainController(final Y model, final List<? extends IView> views) {
+        this(model, views, RenderScheduler.synchronous());
+    }
+
+    /**
+     * Constructor to initialize the controller with any number of views and
+     * a scheduler for the renders, e.g. to score and sort the timelines off
+     * the JavaFX application thread.
+     *
+     * @param model the model instance
+     * @param views the views showing the timelines
+     * @param renderScheduler the scheduler computing and applying the renders
+     */
+    public MainController(final Y model, final List<? extends IView> views,
+            final RenderScheduler renderScheduler) {
         this.model = model;
-        this.view1 = view1;
-        this.view2 = view2;
-        this.scoring = new BookmarkScoring();
+        this.renderScheduler = renderScheduler;
+        this.scoringPipeline = ScoringPipeline.of(
+            new IndexedBookmarkScoring(model),
+            new RecentMessageBonusScoring(),
+            new LengthBasedScoring());
 
         // Default display strategy
         this.currentDisplayStrategy = new ChronologicalStrategy();
 
-        // Set listeners for view1
-        this.view1.setViewListener(new ViewListener() {
-            @Override
-            public void onMessagePublished(final String content, final User user) {
-                publishMessage(content, user);
-            }
+        for (IView view : views) {
+            addView(view);
+        }
+        model.registerListener(modelListener);
+    }
 
-            @Override
-            public void onBookmarkToggled(final Message message, final User user) {
-                toggleBookmark(message, user);
-            }
+    /**
+     * Registers a view, e.g. a monitoring window. If the application is
+     * already started, the view gets its users panes and the current
+     * timelines right away.
+     *
+     * @param view the view to add
+     */
+    public void addView(final IView view) {
+        views.add(view);
+        view.setViewListener(viewListener);
+        if (started) {
+            view.createUsersPanes(model.getUsers());
+            changes.markAllUsers(Collections.singletonList(view));
+            refreshDirtyPanes();
+        }
+    }
 
-            @Override
-            public void onStrategySelected(final DisplayStrategy strategy) {
-                setDisplayStrategy(strategy);
-            }
+    /**
+     * Unregisters a view: it no longer receives timeline updates.
+     *
+     * @param view the view to remove
+     */
+    public void removeView(final IView view) {
+        views.remove(view);
+    }
 
-            @Override
-            public void onDisplayStrategyChanged(final DisplayStrategy strategy) {
-                currentDisplayStrategy = strategy; // Change la stratégie actuelle
-                updateViews(); // Met à jour toutes les vues
-            }
+    /**
+     * Returns the registered views.
+     *
+     * @return an unmodifiable list of the views
+     */
+    public List<IView> getViews() {
+        return Collections.unmodifiableList(views);
+    }
 
-            @Override
-            public void onMessageDeleted(final Message message, final User user) {
-                model.deleteMessage(message);
-                updateViews(); // Met à jour les vues après suppression
-            }
+    /**
+     * Listener shared by all the views, forwarding their events to this controller.
+     */
+    private final ViewListener viewListener = new ViewListener() {
+        @Override
+        public void onMessagePublished(final String content, final User user) {
+            publishMessage(content, user);
+        }
 
-            @Override
-            public void onLoadMoreMessages(final User user) {
-                loadMoreMessages(user); // Load more messages for the user
-            }
+        @Override
+        public void onBookmarkToggled(final Message message, final User user) {
+            toggleBookmark(message, user);
+        }
 
-            @Override
-            public void onTranslateRequested(final Message message, final User user) {
-                translateMessage(message, user);
-            }
-        });
+        @Override
+        public void onStrategySelected(final DisplayStrategy strategy) {
+            setDisplayStrategy(strategy);
+        }
 
-        // Set listeners for view2 (same logic as view1)
-        this.view2.setViewListener(new ViewListener() {
-            @Override
-            public void onMessagePublished(final String content, final User user) {
-                publishMessage(content, user);
-            }
+        @Override
+        public void onDisplayStrategyChanged(final DisplayStrategy strategy) {
+            setDisplayStrategy(strategy); // Change la stratégie actuelle
+        }
 
-            @Override
-            public void onBookmarkToggled(final Message message, final User user) {
-                toggleBookmark(message, user);
-            }
+        @Override
+        public void onMessageDeleted(final Message message, final User user) {
+            deleteMessage(message);
+        }
 
-            @Override
-            public void onStrategySelected(final DisplayStrategy strategy) {
-                setDisplayStrategy(strategy);
-            }
+        @Override
+        public void onLoadMoreMessages(final User user) {
+            loadMoreMessages(user); // Load more messages for the user
+        }
 
-            @Override
-            public void onDisplayStrategyChanged(final DisplayStrategy strategy) {
-                currentDisplayStrategy = strategy; // Change la stratégie actuelle
-                updateViews(); // Met à jour toutes les vues
-            }
+        @Override
+        public void onTranslateRequested(final Message message, final User user) {
+            translateMessage(message, user);
+        }
+
+        @Override
+        public void onVisibleMessagesChanged(final IView view, final User user,
+                final List<Message> visible) {
+            prefetchTranslations(view, user, visible);
+        }
+    };
 
-            @Override
-            public void onMessageDeleted(final Message message, final User user) {
-                model.deleteMessage(message);
-                updateViews(); // Met à jour les vues après suppression
+    /**
+     * Listener of the changes made to the model outside of the events of the
+     * views, e.g. messages fetched in the background. Each change marks the
+     * panes it affects, which are rendered like the panes of an event: with
+     * the current display strategy, one page at a time. Events record what
+     * they affect themselves (see {@link #handleEvent}).
+     */
+    private final IModelDeltaListener modelListener = new IModelDeltaListener() {
+        @Override
+        public void onModelChanged(final List<ModelChange> modelChanges) {
+            if (!started || handlingEvent) {
+                return;
             }
+            for (ModelChange change : modelChanges) {
+                switch (change.getKind()) {
+                    case USER_ADDED:
+                        for (IView view : views) {
+                            view.addUserPane(change.getUser());
+                        }
+                        changes.markUser(views, change.getUser());
+                        break;
+                    case MESSAGE_ADDED:
+                        markMessageAdded(change.getMessage());
+                        break;
+                    case MESSAGE_REMOVED:
+                        markMessageRemoved(change.getMessage());
+                        break;
+                    case DATA_CHANGED:
+                        changes.markUser(views, change.getUser());
+                        break;
+                    default:
+                        break;
+                }
+            }
+            refreshDirtyPanes();
+        }
 
-            @Override
-            public void onLoadMoreMessages(final User user) {
-                loadMoreMessages(user); // Load more messages for the user
+        @Override
+        public void onModelUpdated(final List<User> users, final List<Message> messages) {
+            if (!started || handlingEvent) {
+                return;
             }
+            for (IView view : views) {
+                for (User user : users) {
+                    view.addUserPane(user);
+                }
+            }
+            changes.markAllUsers(views);
+            refreshDirtyPanes();
+        }
+    };
 
-            @Override
-            public void onTranslateRequested(final Message message, final User user) {
-                translateMessage(message, user);
+    // Marks the panes a new message shows up in: those whose loaded pages
+    // reach its position in the order of the strategy. Panes not rendered
+    // yet, or waiting for a page, are rendered anyway.
+    private void markMessageAdded(final Message message) {
+        for (User user : model.getUsers()) {
+            if (!nextCursors.containsKey(user) || pendingLoads.contains(user)) {
+                changes.markUser(views, user);
+                continue;
             }
-        });
+            Map<Message, MessageData> data = new HashMap<>();
+            data.put(message, message.peekMessageData(user).snapshot());
+            scoringPipeline.computeScores(user, data);
+            if (currentDisplayStrategy.isShownUpTo(message, data.get(message),
+                    nextCursors.get(user))) {
+                changes.markUser(views, user);
+            }
+        }
     }
 
+    // Marks the panes showing a deleted message
+    private void markMessageRemoved(final Message message) {
+        for (User user : model.getUsers()) {
+            Set<Message> shown = shownMessages.get(user);
+            if (shown == null || shown.contains(message) || pendingLoads.contains(user)) {
+                changes.markUser(views, user);
+            }
+        }
+    }
 
     // Method to handle publishing a message
     /**
@@ -149,13 +289,25 @@ public class MainController {
         // Utilisez TextMessage au lieu de Message
         TextMessage message = new TextMessage(content, user);
         message.setAuthor(user); // Définissez l'auteur du message
-        model.addMessage(message);
+        handleEvent(() -> {
+            model.addMessage(message);
+            // Only the timelines whose pages reach the message show it
+            changes.markModelChanged();
+            markMessageAdded(message);
+        });
+    }
 
-        // Update all views for each user
-        for (User u : model.getUsers()) {
-            computeScores(u);
-        }
-        updateViews();
+    /**
+     * Deletes a message and refreshes the timelines.
+     *
+     * @param message the message to delete
+     */
+    public void deleteMessage(final Message message) {
+        handleEvent(() -> {
+            model.deleteMessage(message);
+            changes.markModelChanged();
+            markMessageRemoved(message);
+        });
     }
 
     // Method to handle toggling a bookmark
@@ -168,16 +320,141 @@ public class MainController {
      * @param user the user for whom the bookmark status is to be toggled
      */
     public void toggleBookmark(final Message message, final User user) {
-        message.toggleBookmark(user);
-        updateViews();
+        handleEvent(() -> {
+            model.toggleBookmark(message, user);
+            // Bookmarks and their scores are per user: other timelines are unchanged
+            changes.markModelChanged();
+            changes.markUser(views, user);
+        });
     }
 
-    // Method to update both views based on the selected display strategy
-    private void updateViews() {
+    /**
+     * Runs the mutations of an event, then notifies the model listeners once
+     * if the model changed and refreshes only the panes marked as dirty.
+     *
+     * @param mutation the changes made by the event, which record what they
+     *                 affect in {@link #changes}
+     */
+    private void handleEvent(final Runnable mutation) {
+        handlingEvent = true;
+        model.beginUpdate();
+        try {
+            mutation.run();
+            if (changes.isModelChanged()) {
+                // Reset now: the panes may stay dirty until a render is applied
+                changes.clearModelChanged();
+                model.notifyListeners();
+            }
+        } finally {
+            model.endUpdate();
+            handlingEvent = false;
+        }
+        refreshDirtyPanes();
+    }
+
+    // Method to update the panes recorded as dirty, in every view, and to
+    // append the next page of the users waiting for one. The timeline of a
+    // user is computed at most once and shared by the views. Scoring and
+    // sorting run on the render executor; only the calls to the views run on
+    // the UI thread. The dirty panes and the waiting users are forgotten only
+    // once a render is applied, so a superseded render's work is redone by
+    // the next one. Each pane shows as many messages as were loaded by
+    // scrolling, at least a page.
+    private void refreshDirtyPanes() {
+        if (changes.isEmpty() && pendingLoads.isEmpty()) {
+            return;
+        }
+        // Capture everything the render needs while on the UI thread
+        Map<User, List<IView>> plan = new LinkedHashMap<>();
         for (User user : model.getUsers()) {
-            updateView(view1, user);
-            updateView(view2, user);
+            for (IView view : views) {
+                if (changes.isDirty(view, user)) {
+                    plan.computeIfAbsent(user, k -> new ArrayList<>()).add(view);
+                }
+            }
+        }
+        DisplayStrategy strategy = currentDisplayStrategy;
+        ScoringPipeline pipeline = scoringPipeline;
+
+        // The render never reads the model's messages: it gets a copy of
+        // those each page may need, shared by the pages of the same size
+        Map<User, Integer> windows = new HashMap<>();
+        Map<User, List<Long>> versions = new HashMap<>();
+        Map<Integer, List<Message>> candidates = new HashMap<>();
+        for (User user : plan.keySet()) {
+            int window = shownCounts.getOrDefault(user, PAGE_SIZE);
+            if (pendingLoads.contains(user)) {
+                // The pane is rendered again anyway: render the next page too
+                window += PAGE_SIZE;
+            }
+            final int size = window;
+            windows.put(user, size);
+            versions.put(user, versionsOf(user));
+            candidates.computeIfAbsent(size, k -> strategy.selectCandidates(model, null, size));
+        }
+        // Next pages of the other users, read after their cursor
+        Map<User, String> cursors = new LinkedHashMap<>();
+        Map<User, List<Message>> nextCandidates = new HashMap<>();
+        for (User user : pendingLoads) {
+            if (!plan.containsKey(user)) {
+                String cursor = nextCursors.get(user);
+                cursors.put(user, cursor);
+                versions.put(user, versionsOf(user));
+                nextCandidates.put(user, strategy.selectCandidates(model, cursor, PAGE_SIZE));
+            }
         }
+
+        renderScheduler.schedule(cancelled -> {
+            Map<User, TimelinePage> timelines = new HashMap<>();
+            for (User user : plan.keySet()) {
+                if (cancelled.getAsBoolean()) {
+                    return null;
+                }
+                int window = windows.get(user);
+                timelines.put(user, cachedPage(user, candidates.get(window), strategy,
+                    pipeline, null, window, versions.get(user)));
+            }
+            Map<User, TimelinePage> nextPages = new HashMap<>();
+            for (Entry<User, String> e : cursors.entrySet()) {
+                if (cancelled.getAsBoolean()) {
+                    return null;
+                }
+                User user = e.getKey();
+                nextPages.put(user, cachedPage(user, nextCandidates.get(user), strategy,
+                    pipeline, e.getValue(), PAGE_SIZE, versions.get(user)));
+            }
+            return Arrays.asList(timelines, nextPages);
+        }, result -> {
+            Map<User, TimelinePage> timelines = result.get(0);
+            for (Entry<User, List<IView>> e : plan.entrySet()) {
+                TimelinePage page = timelines.get(e.getKey());
+                for (IView view : e.getValue()) {
+                    if (views.contains(view)) {
+                        view.updateMessages(e.getKey(), page.getMessages());
+                    }
+                }
+                nextCursors.put(e.getKey(), page.getNextCursor());
+                shownCounts.put(e.getKey(), windows.get(e.getKey()));
+                shownMessages.put(e.getKey(), new HashSet<>(page.getMessages().keySet()));
+            }
+            for (Entry<User, TimelinePage> e : result.get(1).entrySet()) {
+                TimelinePage page = e.getValue();
+                nextCursors.put(e.getKey(), page.getNextCursor());
+                shownCounts.put(e.getKey(), shownCounts.getOrDefault(e.getKey(), PAGE_SIZE)
+                    + page.getMessages().size());
+                shownMessages.computeIfAbsent(e.getKey(), k -> new HashSet<>())
+                    .addAll(page.getMessages().keySet());
+                appendMessagesToView(e.getKey(), page.getMessages());
+            }
+            changes.clear();
+            pendingLoads.clear();
+        });
+    }
+
+    // Method to update both views based on the selected display strategy
+    private void updateViews() {
+        changes.markAllUsers(views);
+        refreshDirtyPanes();
     }
 
     /**
@@ -187,48 +464,73 @@ public class MainController {
      */
     public void setDisplayStrategy(final DisplayStrategy strategy) {
         this.currentDisplayStrategy = strategy;
-        for (User user : model.getUsers()) {
-            updateView(view1, user);
-            updateView(view2, user);
-        }
+        // The new order starts again from its first page
+        shownCounts.clear();
+        pendingLoads.clear();
+        updateViews();
+    }
+
+    // Versions of what a timeline of the user is computed from: the model
+    // and the user's data
+    private List<Long> versionsOf(final User user) {
+        return Arrays.asList(model.getVersion(), model.getUserVersion(user));
+    }
+
+    // Returns the page from the cache while none of its inputs changed
+    private TimelinePage cachedPage(final User user, final Collection<Message> messages,
+            final DisplayStrategy strategy, final ScoringPipeline pipeline,
+            final String cursor, final int pageSize, final List<Long> versions) {
+        List<Object> key = Arrays.asList(user, strategy, pipeline, cursor, pageSize, versions);
+        return timelineCache.get(key,
+            () -> computePage(user, messages, strategy, pipeline, cursor, pageSize));
     }
 
-    private void updateView(final JfxView view, final User user) {
+    private TimelinePage computePage(final User user, final Collection<Message> messages,
+            final DisplayStrategy strategy, final ScoringPipeline pipeline,
+            final String cursor, final int pageSize) {
         // Compute scores before applying display strategy
-        List<Message> messages = model.getMessages();
         Map<Message, MessageData> messagesData = new HashMap<>();
 
-        // Retrieve the MessageData for the user and each message, then compute scores
+        // Take a per-render copy of the user's state for each message, scores
+        // are computed on these copies and never stored in the model
         for (Message m : messages) {
-            MessageData data = m.getMessageData(user);
-            messagesData.put(m, data);
+            messagesData.put(m, m.peekMessageData(user).snapshot());
         }
 
         // Apply scoring strategies before filtering/sorting
-        applyScoringStrategies(messagesData);
+        pipeline.computeScores(user, messagesData);
 
-        // Filter and sort messages using the current display strategy
-        LinkedHashMap<Message, MessageData> sortedMessagesData = currentDisplayStrategy
-                .filterAndSortMessages(messagesData);
+        // Filter and sort the page using the current display strategy
+        TimelinePage page = strategy.filterAndSortPage(messagesData, cursor, pageSize);
 
-        // Update the view with the sorted and filtered messages
-        view.updateMessages(user, sortedMessagesData);
+        // The same result goes to every view: make the data read-only
+        for (MessageData data : page.getMessages().values()) {
+            data.freeze();
+        }
+        return page;
     }
 
-    // Method to apply all scoring strategies to messages data
-    private void applyScoringStrategies(final Map<Message, MessageData> messagesData) {
-        ScoreStrategy bookmarkScoring = ScoreStrategyFactory.getStrategy("bookmark");
-        ScoreStrategy recentMessageBonusScoring = ScoreStrategyFactory.getStrategy("recent");
-        ScoreStrategy lengthBasedScoring = ScoreStrategyFactory.getStrategy("length");
+    /**
+     * Replaces the scoring pipeline, e.g. to change the order of the stages.
+     *
+     * @param scoringPipeline the pipeline used to score messages
+     */
+    public void setScoringPipeline(final ScoringPipeline scoringPipeline) {
+        this.scoringPipeline = scoringPipeline;
+        updateViews();
+    }
 
-        // Apply each strategy to compute scores
-        bookmarkScoring.computeScores(messagesData);
-        recentMessageBonusScoring.computeScores(messagesData);
-        lengthBasedScoring.computeScores(messagesData);
+    /**
+     * Returns the scoring pipeline, e.g. to read its timing counters.
+     *
+     * @return the pipeline used to score messages
+     */
+    public ScoringPipeline getScoringPipeline() {
+        return scoringPipeline;
     }
 
     /**
-     * Starts the application by initializing the model and both views.
+     * Starts the application by initializing the model and the views.
      */
 
     public void startApp() {
@@ -236,77 +538,61 @@ public class MainController {
         // Les données sont désormais initialisées dans DataInitializer
 
         // Créez les panneaux d'utilisateurs dans les vues
-        view1.createUsersPanes(model.getUsers());
-        view2.createUsersPanes(model.getUsers());
+        for (IView view : views) {
+            view.createUsersPanes(model.getUsers());
+        }
+        started = true;
 
         // Initialize views with the current display strategy
         updateViews();
     }
 
+
     /**
-     * Computes the bookmark scores for a given user.
-     *
-     * @param user the user for whom the scores are computed
+     * Number of messages read by each page of a timeline.
      */
-    private void computeScores(final User user) {
-        Map<Message, MessageData> messagesData = new HashMap<>();
-
-        // Retrieve the MessageData for the user and each message
-        for (Message m : model.getMessages()) {
-            messagesData.put(m, m.getMessageData(user));
-        }
+    public static final int PAGE_SIZE = 20;
 
-        // Apply scoring strategies
-        ScoreStrategy bookmarkScoring = ScoreStrategyFactory.getStrategy("bookmark");
-        ScoreStrategy recentMessageBonusScoring = ScoreStrategyFactory.getStrategy("recent");
-        ScoreStrategy lengthBasedScoring = ScoreStrategyFactory.getStrategy("length");
-
-        bookmarkScoring.computeScores(messagesData);
-        recentMessageBonusScoring.computeScores(messagesData);
-        lengthBasedScoring.computeScores(messagesData);
-
-        // Notify listeners after computing scores
-        model.notifyListeners();
-    }
-
-
-    private static final int BATCH_SIZE = 10; 
-    private Map<User, Integer> userMessageOffsets = new HashMap<>(); 
     /**
-     * Loads more messages for the specified user. This method is typically
-     * called when the user scrolls to the bottom of the message list to load
-     * additional messages.
+     * Loads the next page of the timeline of a user and appends it to the
+     * panes of this user, without rendering the messages already shown. The
+     * page starts at the cursor returned with the messages displayed last,
+     * and is scored and sorted by the render scheduler like the other
+     * renders. Until a first render of the user's panes, the first page is
+     * rendered instead. Does nothing once the last page is shown.
      *
      * @param user the user for whom more messages should be loaded
      */
-    
-     public void loadMoreMessages(final User user) {
-        System.out.println("Loading more messages for user: " + user.getId());
-        int offset = userMessageOffsets.getOrDefault(user, 0);
-    
-        // Fetch additional messages and add them
-        List<Message> newBatch = model.fetchAdditionalMessages(user, BATCH_SIZE);
-        if (newBatch.isEmpty()) {
+    public void loadMoreMessages(final User user) {
+        if (!nextCursors.containsKey(user)) {
+            // Nothing rendered yet: the panes show the first page
+            changes.markUser(views, user);
+            refreshDirtyPanes();
+            return;
+        }
+        String cursor = nextCursors.get(user);
+        if (cursor == null) {
             System.out.println("No more messages to load for user: " + user.getId());
             return;
         }
-    
-        // Update the user offset
-        userMessageOffsets.put(user, offset + newBatch.size());
-    
-        // Refresh the views
-        updateViews();
+        pendingLoads.add(user);
+        refreshDirtyPanes();
+    }
+
+    /**
+     * Returns the cache of computed timelines, e.g. to read its hit rate.
+     *
+     * @return the cache shared by the renders
+     */
+    public TimelineCache getTimelineCache() {
+        return timelineCache;
     }
-    
 
     /**
      * Appends new messages to the view for a specific user.
      *
-     * This method updates two views (view1 and view2) by adding new messages to the user's 
-     * message box.
-     * It iterates through the children of the users' pane in each view, finds the 
-     * corresponding user box,
-     * and appends the new messages to the user's message box.
+     * This method updates every view by adding new messages at the end
+     * of the user's list of messages.
      *
      * @param user The user whose messages are to be appended.
      * @param newMessagesData A LinkedHashMap containing the new messages and their 
@@ -314,76 +600,105 @@ public class MainController {
      */
     public void appendMessagesToView(final User user, 
         final LinkedHashMap<Message, MessageData> newMessagesData) {
-        // Update view1
-        for (Node u : view1.getUsersPane().getChildren()) { // Access the pane in view1
-            VBox userBox = (VBox) ((ScrollPane) u).getContent();
-            Label userID = (Label) userBox.getChildren().get(0);
-            if (userID.getText().equals(user.getId())) {
-                VBox userMsgBox = (VBox) userBox.getChildren().get(1);
-    
-                // Add new messages to the current box in view1
-                for (Entry<Message, MessageData> entry : newMessagesData.entrySet()) {
-                    userMsgBox.getChildren().add(
-                        view1.createMessageWidget(entry.getKey(), entry.getValue(), user)
-                    );
-                }
-                break;
-            }
+        for (IView view : views) {
+            view.appendMessages(user, newMessagesData);
         }
+    }
     
-        // Update view2
-        for (Node u : view2.getUsersPane().getChildren()) { // Access the pane in view2
-            VBox userBox = (VBox) ((ScrollPane) u).getContent();
-            Label userID = (Label) userBox.getChildren().get(0);
-            if (userID.getText().equals(user.getId())) {
-                VBox userMsgBox = (VBox) userBox.getChildren().get(1);
-    
-                // Add new messages to the current box in view2
-                for (Entry<Message, MessageData> entry : newMessagesData.entrySet()) {
-                    userMsgBox.getChildren().add(
-                        view2.createMessageWidget(entry.getKey(), entry.getValue(), user)
-                    );
-                }
-                break;
-            }
+
+    /**
+     * Translates a message from English to the language of the user (see
+     * {@link User#getLanguage()}), through the shortest route of language
+     * pairs, without blocking: the requests run in the background and, once
+     * the translation arrives, only the widget of this message is re-rendered.
+     *
+     * @param message the message to translate
+     * @param user the user requesting the translation
+     * @return a future completed once the translation has been displayed
+     */
+    public CompletableFuture<Void> translateMessage(final Message message, final User user) {
+        Executor ui = renderScheduler.getUiExecutor();
+        return translationPlanner
+            .translate(message.getContent(), MESSAGE_LANGUAGE, user.getLanguage())
+            .handle((translated, error) -> {
+                ui.execute(() -> {
+                    if (error != null) {
+                        System.out.println("La traduction a échoué : " + error);
+                        return;
+                    }
+                    handleEvent(() -> {
+                        message.setTranslatedContent(translated, user);
+                        model.markDataChanged(message, user);
+                        // La traduction ne change ni le score ni l'ordre
+                        changes.markModelChanged();
+                    });
+                    for (IView view : views) {
+                        view.updateMessage(user, message);
+                    }
+                });
+                return null;
+            });
+    }
+
+    /**
+     * Replaces the service used to translate messages.
+     *
+     * @param translationService the translation service
+     */
+    public void setTranslationService(final TranslationService translationService) {
+        this.translationService = translationService;
+        this.translationPlanner = new TranslationRoutePlanner(translationService);
+        if (translationPrefetcher != null) {
+            enableTranslationPrefetch(translationPrefetcher.getBudget(),
+                translationPrefetcher.getMaxQueue());
         }
     }
-    
 
     /**
-     * Translates a message from English to Spanish and then to French.
+     * Turns on the prefetch of translations: the messages visible in the
+     * users panes are translated in the background, at low priority, so that
+     * asking for their translation is usually answered from the cache.
      *
-     * @param message
-     * @param user
+     * @param budget the maximum number of prefetches running at the same time
+     * @param maxQueue the maximum number of messages waiting to be prefetched
      */
-    public void translateMessage(final Message message, final User user) {
-        try {
-            // Étape 1 : Traduire de l'anglais vers l'espagnol
-            String sourceLang1 = "eng";
-            String targetLang1 = "spa";
-            String translatedTextStep1
-                    = ApertiumApiClient.translate(message.getContent(), 
-                    sourceLang1, targetLang1);
-
-            if (translatedTextStep1 != null) {
-                // Étape 2 : Traduire de l'espagnol vers le français
-                String sourceLang2 = "spa";
-                String targetLang2 = "fra";
-                String translatedTextStep2
-                        = ApertiumApiClient.translate(
-                            translatedTextStep1, sourceLang2, targetLang2);
-
-                if (translatedTextStep2 != null) { // Si la traduction est réussie
-                    message.setTranslatedContent(translatedTextStep2, user);
-                    updateViews();
-                } else {
-                    System.out.println("La traduction de l'espagnol vers le français a échoué.");
-                }
-            } else {
-                System.out.println("La traduction de l'anglais vers l'espagnol a échoué.");
-            }
-        } catch (IOException | InterruptedException e) {
-            e.printStackTrace(); // Affiche les erreurs liées à l'API de traduction
+    public void enableTranslationPrefetch(final int budget, final int maxQueue) {
+        disableTranslationPrefetch();
+        translationPrefetcher = new TranslationPrefetcher(translationPlanner,
+            translationService, MESSAGE_LANGUAGE, budget, maxQueue);
+    }
+
+    /**
+     * Turns off the prefetch of translations, cancelling the pending ones.
+     */
+    public void disableTranslationPrefetch() {
+        if (translationPrefetcher != null) {
+            translationPrefetcher.cancelAll();
+            translationPrefetcher = null;
+        }
+    }
+
+    /**
+     * Returns the prefetcher of translations, e.g. to read its counters.
+     *
+     * @return the prefetcher, or null if prefetch is off
+     */
+    public TranslationPrefetcher getTranslationPrefetcher() {
+        return translationPrefetcher;
+    }
+
+    /**
+     * Records the messages visible in a user pane of a view, so that their
+     * translation is prefetched. Does nothing while prefetch is off.
+     *
+     * @param view the view showing the pane
+     * @param user the user of the pane
+     * @param visible the messages visible in the pane
+     */
+    public void prefetchTranslations(final IView view, final User user,
+            final List<Message> visible) {
+        if (translationPrefetcher != null) {
+            translationPrefetcher.setVisible(Arrays.asList(view, user), user, visible);
         }
     }
 }
@@ -0,0 +1,127 @@
+package fr.univ_lyon1.info.m1.microblog.controller;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs the expensive part of a render (scoring and sorting the timelines) on
+ * a background executor and posts only the result to the UI thread. Each call
+ * to {@link #schedule} supersedes the previous ones: a render that has not
+ * started yet is skipped, a running one is told to stop through its
+ * cancellation flag, and the result of a stale render is never applied.
+ */
+public class RenderScheduler {
+
+    /**
+     * Executor computing the renders.
+     */
+    private final Executor renderExecutor;
+
+    /**
+     * Executor applying the results, i.e. the UI thread.
+     */
+    private final Executor uiExecutor;
+
+    /**
+     * Number of the latest scheduled render.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Creates a scheduler.
+     *
+     * @param renderExecutor the executor computing the renders
+     * @param uiExecutor the executor applying their results, e.g.
+     *                   {@code Platform::runLater}
+     */
+    public RenderScheduler(final Executor renderExecutor, final Executor uiExecutor) {
+        this.renderExecutor = renderExecutor;
+        this.uiExecutor = uiExecutor;
+    }
+
+    /**
+     * Creates a scheduler computing and applying renders in the calling
+     * thread, as soon as they are scheduled.
+     *
+     * @return a synchronous scheduler
+     */
+    public static RenderScheduler synchronous() {
+        return new RenderScheduler(Runnable::run, Runnable::run);
+    }
+
+    /**
+     * Creates the bounded executor used for background renders: a single
+     * daemon thread and a queue of one pending render. When the queue is full
+     * the oldest pending render is dropped, since it is stale anyway.
+     *
+     * @return a new render executor
+     */
+    public static ExecutorService newRenderExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(1), r -> {
+                Thread t = new Thread(r, "timeline-render");
+                t.setDaemon(true);
+                return t;
+            }, new ThreadPoolExecutor.DiscardOldestPolicy());
+        return executor;
+    }
+
+    /**
+     * Schedules a render, superseding all the previous ones.
+     *
+     * @param <T> the type of the computed result
+     * @param compute computes the result off the UI thread; it should check
+     *                the given flag regularly and return early once it is set,
+     *                its result being discarded
+     * @param apply applies the result on the UI thread, if no newer render
+     *              was scheduled in the meantime
+     */
+    public <T> void schedule(final Function<BooleanSupplier, T> compute,
+            final Consumer<T> apply) {
+        final long gen = generation.incrementAndGet();
+        final BooleanSupplier cancelled = () -> generation.get() != gen;
+        renderExecutor.execute(() -> {
+            if (cancelled.getAsBoolean()) {
+                return;
+            }
+            T result;
+            try {
+                result = compute.apply(cancelled);
+            } catch (RuntimeException e) {
+                e.printStackTrace(); // Le rendu est abandonné, le suivant le remplacera
+                return;
+            }
+            if (cancelled.getAsBoolean()) {
+                return;
+            }
+            uiExecutor.execute(() -> {
+                if (!cancelled.getAsBoolean()) {
+                    apply.accept(result);
+                }
+            });
+        });
+    }
+
+    /**
+     * Returns the executor of the UI thread, where the results are applied.
+     *
+     * @return the UI executor
+     */
+    public Executor getUiExecutor() {
+        return uiExecutor;
+    }
+
+    /**
+     * Cancels the pending renders: their results will not be applied.
+     */
+    public void cancelAll() {
+        generation.incrementAndGet();
+    }
+}
@@ -0,0 +1,207 @@
+package fr.univ_lyon1.info.m1.microblog.controller;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import fr.univ_lyon1.info.m1.microblog.model.TimelinePage;
+
+/**
+ * Bounded memo of computed timelines. A timeline is identified by everything
+ * it is computed from: the user, the strategy, the scoring pipeline, the page
+ * asked for and the versions of the model and of the user's state (see
+ * {@link fr.univ_lyon1.info.m1.microblog.model.Y#getVersion()}). While they
+ * are the same, e.g. when switching the strategy back and forth, the cached
+ * page is returned instead of scoring and sorting again. The least recently
+ * used entries are evicted beyond the capacity. Entries also expire after a
+ * maximum age, since scores may depend on the current time (see
+ * {@link fr.univ_lyon1.info.m1.microblog.model.RecentMessageBonusScoring}).
+ * The cache can be used from the render thread and the UI thread.
+ */
+public class TimelineCache {
+
+    /**
+     * Default maximum number of cached timelines.
+     */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * Default maximum age of a cached timeline.
+     */
+    public static final Duration DEFAULT_MAX_AGE = Duration.ofMinutes(1);
+
+    private final int capacity;
+    private final long maxAgeMillis;
+    private final LongSupplier clock;
+
+    /**
+     * Cached pages by key, least recently used first.
+     */
+    private final LinkedHashMap<List<Object>, CachedPage> entries;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates a cache with the default limits.
+     */
+    public TimelineCache() {
+        this(DEFAULT_CAPACITY, DEFAULT_MAX_AGE);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param capacity the maximum number of cached timelines
+     * @param maxAge the time after which a cached timeline is recomputed
+     */
+    public TimelineCache(final int capacity, final Duration maxAge) {
+        this(capacity, maxAge, System::currentTimeMillis);
+    }
+
+    /**
+     * Creates a cache reading the time from a clock, e.g. in tests.
+     *
+     * @param capacity the maximum number of cached timelines
+     * @param maxAge the time after which a cached timeline is recomputed
+     * @param clock gives the current time in milliseconds
+     */
+    TimelineCache(final int capacity, final Duration maxAge, final LongSupplier clock) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.maxAgeMillis = maxAge.toMillis();
+        this.clock = clock;
+        this.entries = new LinkedHashMap<List<Object>, CachedPage>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<List<Object>, CachedPage> eldest) {
+                if (size() > TimelineCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached timeline of a key, or computes and caches it. The
+     * computation runs outside of the cache's lock.
+     *
+     * @param key the inputs of the timeline, compared with equals
+     * @param compute computes the timeline on a miss
+     * @return the cached or computed timeline
+     */
+    public TimelinePage get(final List<Object> key, final Supplier<TimelinePage> compute) {
+        long now = clock.getAsLong();
+        synchronized (this) {
+            CachedPage entry = entries.get(key);
+            if (entry != null && now - entry.createdAt < maxAgeMillis) {
+                hits++;
+                return entry.page;
+            }
+            misses++;
+        }
+        TimelinePage page = compute.get();
+        synchronized (this) {
+            entries.put(key, new CachedPage(page, now));
+        }
+        return page;
+    }
+
+    /**
+     * Forgets every cached timeline, keeping the counters.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Returns the number of cached timelines.
+     *
+     * @return at most the capacity
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the maximum number of cached timelines.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of timelines answered from the cache.
+     *
+     * @return the number of hits since the last reset
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of timelines computed because they were not cached,
+     * or no longer valid.
+     *
+     * @return the number of misses since the last reset
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of timelines dropped to respect the capacity.
+     *
+     * @return the number of evictions since the last reset
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the share of the timelines answered from the cache.
+     *
+     * @return hits / (hits + misses), or 0 before the first request
+     */
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Resets the hit, miss and eviction counters.
+     */
+    public synchronized void resetCounters() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d/%d timelines, %d hits, %d misses (%.0f%%), %d evictions",
+            entries.size(), capacity, hits, misses, getHitRate() * 100, evictions);
+    }
+
+    /**
+     * A cached timeline and the time it was computed.
+     */
+    private static final class CachedPage {
+        private final TimelinePage page;
+        private final long createdAt;
+
+        CachedPage(final TimelinePage page, final long createdAt) {
+            this.page = page;
+            this.createdAt = createdAt;
+        }
+    }
+}
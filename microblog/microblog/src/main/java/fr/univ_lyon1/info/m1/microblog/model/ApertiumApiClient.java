@@ -7,8 +7,14 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
 /**
@@ -20,6 +26,9 @@ public final class ApertiumApiClient {
     private ApertiumApiClient() {
     }
     
+    // Gson est sans état et thread-safe : une seule instance suffit
+    private static final Gson GSON = new Gson();
+
     // URL de l'API de traduction
     private static String baseUrl = "https://apertium.org/apy/translate";
 
@@ -44,22 +53,132 @@ public final class ApertiumApiClient {
                                    final String sourceLang,
                                    final String targetLang)
             throws IOException, InterruptedException {
+        HttpRequest request = requestBuilder(text, sourceLang, targetLang).build();
+
+        HttpResponse<String> response = sharedClient().send(request,
+                HttpResponse.BodyHandlers.ofString());
+        return parseResponse(response);
+    }
+
+    /**
+     * Returns the HTTP client shared by all translation requests, so that
+     * connections are pooled and reused. It uses HTTP/2 when the server
+     * supports it (see {@link #newRequest}).
+     *
+     * @return the shared client
+     */
+    static HttpClient sharedClient() {
+        return SharedClient.INSTANCE;
+    }
+
+    // Créé au premier appel seulement
+    private static final class SharedClient {
+        static final HttpClient INSTANCE = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    /**
+     * Prepares a translation request to the current base URL.
+     *
+     * @param text       The text to be translated.
+     * @param sourceLang The source language code.
+     * @param targetLang The target language code.
+     * @return A builder of the request, ready to be built.
+     */
+    static HttpRequest.Builder requestBuilder(final String text, final String sourceLang,
+            final String targetLang) {
+        return newRequest(requestUri(text, sourceLang, targetLang));
+    }
+
+    /**
+     * Prepares a GET request to the API. HTTP/2 is negotiated for https URLs;
+     * plain http URLs use HTTP/1.1, since the HTTP/2 upgrade dance would cost
+     * a round trip on every new connection.
+     *
+     * @param uri The URI of the request.
+     * @return A builder of the request, ready to be built.
+     */
+    static HttpRequest.Builder newRequest(final URI uri) {
+        return HttpRequest.newBuilder()
+                .uri(uri)
+                .version("https".equalsIgnoreCase(uri.getScheme())
+                    ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .GET();
+    }
+
+    /**
+     * Builds the URI of a translation request to the current base URL.
+     *
+     * @param text       The text to be translated.
+     * @param sourceLang The source language code.
+     * @param targetLang The target language code.
+     * @return The URI of the request.
+     */
+    static URI requestUri(final String text, final String sourceLang, final String targetLang) {
         String params = "q=" + URLEncoder.encode(text, StandardCharsets.UTF_8)
                 + "&langpair=" + URLEncoder.encode(
                     sourceLang + "|" + targetLang, StandardCharsets.UTF_8);
+        return URI.create(baseUrl + "?" + params);
+    }
 
-        HttpClient client = HttpClient.newHttpClient();
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(baseUrl + "?" + params))
-                .GET()
-                .build();
+    /**
+     * Builds the URI listing the language pairs of the API, next to the
+     * translation endpoint of the current base URL.
+     *
+     * @return The URI of the listPairs endpoint.
+     */
+    static URI listPairsUri() {
+        String base = baseUrl;
+        if (base.endsWith("/translate")) {
+            base = base.substring(0, base.length() - "translate".length());
+        } else if (!base.endsWith("/")) {
+            base = base + "/";
+        }
+        return URI.create(base + "listPairs");
+    }
 
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+    /**
+     * Extracts the available language pairs from a response of the listPairs
+     * endpoint.
+     *
+     * @param response The response to a listPairs request.
+     * @return The target languages available from each source language, or
+     *         null if the request failed.
+     */
+    static Map<String, Set<String>> parsePairs(final HttpResponse<String> response) {
+        if (response.statusCode() != 200) {
+            System.err.println("Erreur lors de la récupération des paires de langues:");
+            System.err.println("Statut HTTP: " + response.statusCode());
+            return null;
+        }
+        try {
+            JsonObject jsonObject = GSON.fromJson(response.body(), JsonObject.class);
+            Map<String, Set<String>> pairs = new HashMap<>();
+            for (JsonElement e : jsonObject.getAsJsonArray("responseData")) {
+                JsonObject pair = e.getAsJsonObject();
+                pairs.computeIfAbsent(pair.get("sourceLanguage").getAsString(),
+                    k -> new HashSet<>()).add(pair.get("targetLanguage").getAsString());
+            }
+            return pairs;
+        } catch (Exception e) {
+            System.err.println("Erreur lors du parsing des paires de langues:");
+            e.printStackTrace();
+            return null;
+        }
+    }
 
+    /**
+     * Extracts the translated text from a response of the API.
+     *
+     * @param response The response to a translation request.
+     * @return The translated text, or null if the request failed.
+     */
+    static String parseResponse(final HttpResponse<String> response) {
         if (response.statusCode() == 200) {
             try {
-                Gson gson = new Gson();
-                JsonObject jsonObject = gson.fromJson(response.body(), JsonObject.class);
+                JsonObject jsonObject = GSON.fromJson(response.body(), JsonObject.class);
                 JsonObject responseData = jsonObject.getAsJsonObject("responseData");
                 return responseData.get("translatedText").getAsString();
             } catch (Exception e) {
@@ -1,9 +1,7 @@
 package fr.univ_lyon1.info.m1.microblog.model;
 
-import java.util.Arrays;
-import java.util.HashSet;
+import java.util.BitSet;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * Scoring of messages based on bookmarks.
@@ -12,26 +10,22 @@ public class BookmarkScoring implements ScoreStrategy {
 
     @Override
     public void computeScores(final Map<Message, MessageData> messagesData) {
-        Set<Message> messages = messagesData.keySet();
-        Set<String> bookmarkedWords = new HashSet<>();
+        BitSet bookmarkedWords = new BitSet();
 
         // Collect words from bookmarked messages
-        messages.forEach((Message m) -> {
-            MessageData d = messagesData.get(m);
-            String[] w = m.getContent().toLowerCase().split("[^\\p{Alpha}]+");
-            Set<String> words = new HashSet<>(Arrays.asList(w));
-            d.setWords(words);
+        messagesData.forEach((Message m, MessageData d) -> {
             if (d.isBookmarked()) {
-                bookmarkedWords.addAll(words);
+                for (int w : m.getWordIds()) {
+                    bookmarkedWords.set(w);
+                }
             }
         });
 
         // Calculate the score of each message
-        messages.forEach((Message m) -> {
-            MessageData d = messagesData.get(m);
+        messagesData.forEach((Message m, MessageData d) -> {
             int score = 0;
-            for (String w : d.getWords()) {
-                if (bookmarkedWords.contains(w)) {
+            for (int w : m.getWordIds()) {
+                if (bookmarkedWords.get(w)) {
                     score++;
                 }
             }
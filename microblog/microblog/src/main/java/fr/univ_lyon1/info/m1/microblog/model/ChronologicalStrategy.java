@@ -1,32 +1,112 @@
 package fr.univ_lyon1.info.m1.microblog.model;
 
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.function.BiPredicate;
+import java.util.stream.Stream;
 
 /**
  * Stratégie d'affichage pour afficher tous les messages dans l'ordre
- * chronologique.
+ * chronologique inverse : les plus récents d'abord, de sorte qu'un message
+ * publié apparaît en haut de la première page.
  */
 public class ChronologicalStrategy implements DisplayStrategy {
 
     /**
-     * Trie les messages dans l'ordre chronologique basé sur leur date de création.
+     * Messages affichés : tous.
+     */
+    private static final BiPredicate<Message, MessageData> FILTER = (m, d) -> true;
+
+    /**
+     * Ordre d'affichage : date décroissante.
+     */
+    private static final PackedKeySorter.KeyFunction KEY =
+        (m, d) -> PackedKeySorter.pack(false, 0, m.getCreatedAt(), true);
+
+    /**
+     * Position d'un message dans les curseurs de page : le complément de sa
+     * date, dont le bit de signe est inversé, qui se compare comme un nombre
+     * non signé dans l'ordre de l'index du modèle (date décroissante).
+     */
+    private static final PackedKeySorter.KeyFunction TIME =
+        (m, d) -> ~(m.getCreatedAt() ^ Long.MIN_VALUE);
+
+    /**
+     * Parcourt les messages du plus récent au plus ancien, selon leur date de
+     * création, dans un ordre calculé au fur et à mesure de la lecture (voir
+     * {@link PackedKeySorter#stream}).
+     *
+     * @param messagesData une map contenant les messages et leurs données associées
+     * @return les couples (message, données), les plus récents d'abord
+     */
+    @Override
+    public Stream<Map.Entry<Message, MessageData>> streamMessages(
+            final Map<Message, MessageData> messagesData) {
+        return PackedKeySorter.stream(messagesData, FILTER, KEY);
+    }
+
+    /**
+     * Lit les messages de la page dans l'index chronologique du modèle, à
+     * partir du curseur, sans trier ni visiter les messages précédents : seuls
+     * ces messages seront notés. Un message de plus est gardé, pour savoir
+     * s'il reste une page.
+     *
+     * @param model le modèle contenant les messages
+     * @param cursor le curseur de la page précédente, ou null pour la première page
+     * @param pageSize le nombre maximal de messages de la page
+     * @return au plus {@code pageSize + 1} messages, les plus récents d'abord
+     * @throws IllegalArgumentException si le curseur est invalide
+     */
+    @Override
+    public List<Message> selectCandidates(final Y model, final String cursor,
+            final int pageSize) {
+        TimelineCursor after = TimelineCursor.decode(cursor);
+        Collection<Message> tail = after == null ? model.getMessagesNewestFirst()
+            : model.getMessagesNewestFirstAfter(~after.getPosition() ^ Long.MIN_VALUE,
+                after.getId());
+        long wanted = Math.max(pageSize, 0) + 1L;
+        // Not presized: the size of the index view is counted, not stored
+        List<Message> candidates = new ArrayList<>();
+        for (Message m : tail) {
+            if (candidates.size() >= wanted) {
+                break;
+            }
+            candidates.add(m);
+        }
+        return candidates;
+    }
+
+    /**
+     * Lit une page, les plus récents d'abord, en ne triant que les messages
+     * situés après le curseur (date et id du dernier message de la page
+     * précédente).
+     *
+     * @param messagesData une map contenant les messages et leurs données associées
+     * @param cursor le curseur de la page précédente, ou null pour la première page
+     * @param pageSize le nombre maximal de messages de la page
+     * @return la page et le curseur de la suivante
+     */
+    @Override
+    public TimelinePage filterAndSortPage(final Map<Message, MessageData> messagesData,
+            final String cursor, final int pageSize) {
+        return PackedKeySorter.page(messagesData, FILTER, TIME, cursor, pageSize);
+    }
+
+    /**
+     * Compare la position du message à celle du curseur, comme
+     * {@link #filterAndSortPage}.
      *
-     * @param messagesData Un map contenant les messages et leurs données associées.
-     * @return Une map triée avec les messages dans l'ordre chronologique.
+     * @param message le message
+     * @param data ses données, score calculé
+     * @param cursor le curseur de la dernière page lue, ou null
+     * @return vrai si le message est gardé et trié avant le curseur
      */
     @Override
-    public LinkedHashMap<Message, MessageData> filterAndSortMessages(
-           final Map<Message, MessageData> messagesData) {
-        return messagesData.entrySet().stream()
-                .sorted((e1, e2) -> 
-                e1.getKey().getDateCreated().compareTo(e2.getKey().getDateCreated()))
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        Map.Entry::getValue,
-                        (e1, e2) -> e1,
-                        LinkedHashMap::new));
+    public boolean isShownUpTo(final Message message, final MessageData data,
+            final String cursor) {
+        return PackedKeySorter.isShownUpTo(message, data, FILTER, TIME, cursor);
     }
 
     /**
@@ -1,7 +1,10 @@
 package fr.univ_lyon1.info.m1.microblog.model;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * L'interface DisplayStrategy définit une stratégie pour filtrer et trier 
@@ -12,13 +15,128 @@ import java.util.Map;
 public interface DisplayStrategy {
 
     /**
-     * Filtre et trie les messages selon la stratégie définie.
+     * Parcourt les messages filtrés et triés selon la stratégie. Les
+     * stratégies peuvent calculer l'ordre au fur et à mesure de la lecture, de
+     * sorte qu'un consommateur qui s'arrête tôt (par exemple avec
+     * {@code limit}) ne paie que ce qu'il lit.
+     *
+     * @param messagesData une map contenant les messages et leurs données
+     *                     associées, qui ne doit pas changer pendant la lecture
+     * @return les couples (message, données) filtrés, dans l'ordre d'affichage
+     */
+    Stream<Map.Entry<Message, MessageData>> streamMessages(
+        Map<Message, MessageData> messagesData);
+
+    /**
+     * Filtre et trie les messages selon la stratégie définie, dans l'ordre de
+     * {@link #streamMessages(Map)}.
      *
      * @param messagesData une map contenant les messages et leurs données associées
      * @return un LinkedHashMap contenant les messages filtrés et triés
      */
-    LinkedHashMap<Message, MessageData> filterAndSortMessages(
-        Map<Message, MessageData> messagesData);
+    default LinkedHashMap<Message, MessageData> filterAndSortMessages(
+            final Map<Message, MessageData> messagesData) {
+        return filterAndSortMessages(messagesData, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Filtre et trie les messages selon la stratégie, en ne gardant que les
+     * {@code limit} premiers : seuls ceux-ci sont lus dans
+     * {@link #streamMessages(Map)}.
+     *
+     * @param messagesData une map contenant les messages et leurs données associées
+     * @param limit le nombre maximal de messages à retourner
+     * @return un LinkedHashMap contenant au plus {@code limit} messages filtrés et triés
+     */
+    default LinkedHashMap<Message, MessageData> filterAndSortMessages(
+            final Map<Message, MessageData> messagesData, final int limit) {
+        int size = Math.max(0, Math.min(limit, messagesData.size()));
+        LinkedHashMap<Message, MessageData> result = new LinkedHashMap<>(size * 4 / 3 + 1);
+        Stream<Map.Entry<Message, MessageData>> stream = streamMessages(messagesData);
+        if (limit < Integer.MAX_VALUE) {
+            // Otherwise everything is read, which lets the stream sort at once
+            stream = stream.limit(Math.max(limit, 0));
+        }
+        stream.forEachOrdered(e -> result.put(e.getKey(), e.getValue()));
+        return result;
+    }
+
+    /**
+     * Choisit les messages du modèle parmi lesquels une page sera lue, puis
+     * filtrée et triée par {@link #filterAndSortPage}. Cette méthode est
+     * appelée là où le modèle peut être lu (le thread de l'interface) : la
+     * liste rendue est une copie, qui peut ensuite être lue sur un autre
+     * thread sans accéder au modèle. Par défaut, tous les messages.
+     *
+     * @param model le modèle contenant les messages
+     * @param cursor le curseur de la page précédente, ou null pour la première page
+     * @param pageSize le nombre maximal de messages de la page
+     * @return une copie des messages dont la page peut avoir besoin
+     * @throws IllegalArgumentException si le curseur est invalide
+     */
+    default List<Message> selectCandidates(final Y model, final String cursor,
+            final int pageSize) {
+        return new ArrayList<>(model.getMessages());
+    }
+
+    /**
+     * Lit une page de la timeline : au plus {@code pageSize} messages, à
+     * partir du curseur rendu avec la page précédente. L'implémentation par
+     * défaut lit tout l'ordre et reprend après le dernier message de la page
+     * précédente (ou à sa position s'il a disparu) ; les stratégies peuvent la
+     * redéfinir pour ne trier que les messages situés après le curseur.
+     *
+     * @param messagesData les messages choisis par {@link #selectCandidates}
+     *                     et leurs données associées
+     * @param cursor le curseur de la page précédente, ou null pour la première page
+     * @param pageSize le nombre maximal de messages de la page
+     * @return la page et le curseur de la suivante
+     * @throws IllegalArgumentException si le curseur est invalide
+     */
+    default TimelinePage filterAndSortPage(final Map<Message, MessageData> messagesData,
+            final String cursor, final int pageSize) {
+        TimelineCursor after = TimelineCursor.decode(cursor);
+        List<Map.Entry<Message, MessageData>> sorted = new ArrayList<>(
+            filterAndSortMessages(messagesData).entrySet());
+        int start = 0;
+        if (after != null) {
+            // Position du curseur : son rang dans la page précédente
+            start = (int) Math.max(0, Math.min(after.getPosition() + 1, sorted.size()));
+            for (int i = 0; i < sorted.size(); i++) {
+                if (sorted.get(i).getKey().getId() == after.getId()) {
+                    start = i + 1;
+                    break;
+                }
+            }
+        }
+        int end = (int) Math.min((long) start + Math.max(pageSize, 0), sorted.size());
+        LinkedHashMap<Message, MessageData> page = new LinkedHashMap<>();
+        for (Map.Entry<Message, MessageData> e : sorted.subList(start, end)) {
+            page.put(e.getKey(), e.getValue());
+        }
+        String next = null;
+        if (end < sorted.size() && end > start) {
+            next = new TimelineCursor(end - 1, sorted.get(end - 1).getKey().getId()).encode();
+        }
+        return new TimelinePage(page, next);
+    }
+
+    /**
+     * Indique si un message fait partie des pages lues jusqu'au curseur, par
+     * exemple pour savoir si un message ajouté apparaît dans les pages déjà
+     * affichées. Par défaut, vrai : l'ordre n'est connu qu'une fois trié.
+     *
+     * @param message le message
+     * @param data ses données, score calculé
+     * @param cursor le curseur de la dernière page lue, ou null si toutes
+     *               les pages l'ont été
+     * @return vrai si le message est filtré et trié avant le curseur
+     * @throws IllegalArgumentException si le curseur est invalide
+     */
+    default boolean isShownUpTo(final Message message, final MessageData data,
+            final String cursor) {
+        return true;
+    }
 
     /**
      * Fournit le nom de la stratégie pour l'affichage (par exemple dans un ComboBox).
@@ -0,0 +1,20 @@
+package fr.univ_lyon1.info.m1.microblog.model;
+
+import java.util.List;
+
+/**
+ * Listener notified with the changes made to the model since the previous
+ * notification, instead of the whole model, so that the cost of a
+ * notification depends on the size of the change only.
+ * {@link #onModelUpdated} is still called when the model could not tell
+ * what changed.
+ */
+public interface IModelDeltaListener extends IModelListener {
+
+    /**
+     * Called when the model changed.
+     *
+     * @param changes the changes, in the order they were made
+     */
+    void onModelChanged(List<ModelChange> changes);
+}
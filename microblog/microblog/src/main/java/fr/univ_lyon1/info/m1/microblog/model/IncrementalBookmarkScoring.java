@@ -0,0 +1,171 @@
+package fr.univ_lyon1.info.m1.microblog.model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * Incremental version of {@link BookmarkScoring}. Instead of re-tokenizing
+ * every message on each refresh, it keeps for each user a multiset of the
+ * words of their bookmarked messages and the resulting score of each message.
+ * A bookmark toggle, a new message or a deletion only walks the posting lists
+ * of the {@link InvertedIndex} for the words whose bookmarked count crosses
+ * zero, so messages with no overlap are never visited. Words are the ids from
+ * {@link Message#getWordIds()}.
+ *
+ * <p>The score of a message for a user is the number of its words that appear
+ * in at least one message bookmarked by that user, as in {@link BookmarkScoring}.
+ * Methods are synchronized, so that scores can be read while rendering off the
+ * UI thread.
+ */
+public class IncrementalBookmarkScoring {
+
+    /**
+     * Index of the messages of the model, maintained by the model.
+     */
+    private final InvertedIndex index;
+
+    /**
+     * For each user, number of bookmarked messages containing each word.
+     */
+    private final Map<User, Map<Integer, Integer>> bookmarkedWords = new HashMap<>();
+
+    /**
+     * For each user, non-zero bookmark scores by message id.
+     */
+    private final Map<User, Map<Integer, Integer>> scores = new HashMap<>();
+
+    /**
+     * Creates a scorer over the messages of an index.
+     *
+     * @param index the index of the scored messages; the caller adds messages
+     *              to it before {@link #messageAdded} and removes them after
+     *              {@link #messageRemoved}
+     */
+    public IncrementalBookmarkScoring(final InvertedIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Scores a new message for every user with bookmarks.
+     *
+     * @param message the message added to the model
+     * @param users the users of the model, whose existing bookmarks on this
+     *              message (if any) are taken into account
+     */
+    public synchronized void messageAdded(final Message message, final Collection<User> users) {
+        int[] words = message.getWordIds();
+        for (Map.Entry<User, Map<Integer, Integer>> e : bookmarkedWords.entrySet()) {
+            int score = 0;
+            for (int w : words) {
+                if (e.getValue().containsKey(w)) {
+                    score++;
+                }
+            }
+            setScore(e.getKey(), message.getId(), score);
+        }
+        for (User u : users) {
+            if (message.peekMessageData(u).isBookmarked()) {
+                addBookmark(u, words);
+            }
+        }
+    }
+
+    /**
+     * Unregisters a deleted message: its words no longer count as bookmarked
+     * and it no longer has a score.
+     *
+     * @param message the message removed from the model
+     */
+    public synchronized void messageRemoved(final Message message) {
+        int[] words = message.getWordIds();
+        for (User u : new HashSet<>(bookmarkedWords.keySet())) {
+            if (message.peekMessageData(u).isBookmarked()) {
+                removeBookmark(u, words);
+            }
+        }
+        for (Map<Integer, Integer> userScores : scores.values()) {
+            userScores.remove(message.getId());
+        }
+    }
+
+    /**
+     * Updates the scores after a user bookmarked or un-bookmarked a message.
+     *
+     * @param message the message whose bookmark changed
+     * @param user the user who toggled the bookmark
+     * @param bookmarked the new bookmark status
+     */
+    public synchronized void bookmarkToggled(final Message message, final User user,
+            final boolean bookmarked) {
+        if (bookmarked) {
+            addBookmark(user, message.getWordIds());
+        } else {
+            removeBookmark(user, message.getWordIds());
+        }
+    }
+
+    /**
+     * Returns the bookmark score of a message for a user.
+     *
+     * @param user the user viewing the message
+     * @param message the message to score
+     * @return the number of words of the message found in the user's bookmarks
+     */
+    public synchronized int getScore(final User user, final Message message) {
+        return scoresOf(user).getOrDefault(message.getId(), 0);
+    }
+
+    private Map<Integer, Integer> scoresOf(final User user) {
+        return scores.getOrDefault(user, Collections.emptyMap());
+    }
+
+    private void addBookmark(final User user, final int[] words) {
+        Map<Integer, Integer> counts = bookmarkedWords.computeIfAbsent(user, k -> new HashMap<>());
+        for (int w : words) {
+            if (counts.merge(w, 1, Integer::sum) == 1) {
+                // The word just became bookmarked: bump the messages using it
+                index.forEachMessage(w,
+                    id -> setScore(user, id, scoresOf(user).getOrDefault(id, 0) + 1));
+            }
+        }
+    }
+
+    private void removeBookmark(final User user, final int[] words) {
+        Map<Integer, Integer> counts = bookmarkedWords.get(user);
+        if (counts == null) {
+            return;
+        }
+        for (int w : words) {
+            Integer count = counts.get(w);
+            if (count == null) {
+                continue;
+            }
+            if (count > 1) {
+                counts.put(w, count - 1);
+                continue;
+            }
+            // Last bookmark using this word is gone
+            counts.remove(w);
+            index.forEachMessage(w,
+                id -> setScore(user, id, scoresOf(user).getOrDefault(id, 0) - 1));
+        }
+        if (counts.isEmpty()) {
+            bookmarkedWords.remove(user);
+            scores.remove(user);
+        }
+    }
+
+    private void setScore(final User user, final int messageId, final int score) {
+        if (score > 0) {
+            scores.computeIfAbsent(user, k -> new HashMap<>()).put(messageId, score);
+        } else {
+            Map<Integer, Integer> userScores = scores.get(user);
+            if (userScores != null) {
+                userScores.remove(messageId);
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package fr.univ_lyon1.info.m1.microblog.model;
+
+/**
+ * Scoring stage reading the bookmark scores maintained incrementally by the
+ * model (see {@link IncrementalBookmarkScoring}), instead of recomputing them
+ * like {@link BookmarkScoring}.
+ */
+public class IndexedBookmarkScoring implements ScoringStage {
+
+    /**
+     * The model holding the bookmark scores.
+     */
+    private final Y model;
+
+    /**
+     * Creates a stage reading the bookmark scores of a model.
+     *
+     * @param model the model of the scored messages
+     */
+    public IndexedBookmarkScoring(final Y model) {
+        this.model = model;
+    }
+
+    @Override
+    public int contribution(final User user, final Message message, final MessageData data) {
+        return model.getBookmarkScore(user, message);
+    }
+}
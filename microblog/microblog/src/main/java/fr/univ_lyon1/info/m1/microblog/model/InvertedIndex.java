@@ -0,0 +1,114 @@
+package fr.univ_lyon1.info.m1.microblog.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * Inverted index from word ids (see {@link WordDictionary}) to the ids of the
+ * messages containing them. It lets scorers visit only the messages sharing a
+ * word with something, instead of scanning every message.
+ */
+public class InvertedIndex {
+
+    /**
+     * Posting list of each word, for words used by at least one message.
+     */
+    private final Map<Integer, Postings> postings = new HashMap<>();
+
+    /**
+     * Indexes the words of a message.
+     *
+     * @param message the message to index
+     */
+    public void add(final Message message) {
+        for (int w : message.getWordIds()) {
+            postings.computeIfAbsent(w, k -> new Postings()).add(message.getId());
+        }
+    }
+
+    /**
+     * Removes a message from the posting lists of its words.
+     *
+     * @param message the message to remove
+     */
+    public void remove(final Message message) {
+        for (int w : message.getWordIds()) {
+            Postings p = postings.get(w);
+            if (p != null) {
+                p.remove(message.getId());
+                if (p.size == 0) {
+                    postings.remove(w);
+                }
+            }
+        }
+    }
+
+    /**
+     * Calls an action on the id of every message containing a word, in
+     * increasing id order.
+     *
+     * @param wordId the id of the word
+     * @param action the action to call on each message id
+     */
+    public void forEachMessage(final int wordId, final IntConsumer action) {
+        Postings p = postings.get(wordId);
+        if (p != null) {
+            for (int i = 0; i < p.size; i++) {
+                action.accept(p.ids[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of messages containing a word.
+     *
+     * @param wordId the id of the word
+     * @return the length of the posting list of the word
+     */
+    public int count(final int wordId) {
+        Postings p = postings.get(wordId);
+        return p == null ? 0 : p.size;
+    }
+
+    /**
+     * Sorted, growable array of message ids.
+     */
+    private static final class Postings {
+        private int[] ids = new int[2];
+        private int size;
+
+        void add(final int id) {
+            // Messages are mostly indexed in id order, so appending is the common case
+            if (size == 0 || ids[size - 1] < id) {
+                grow();
+                ids[size++] = id;
+                return;
+            }
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos >= 0) {
+                return;
+            }
+            pos = -pos - 1;
+            grow();
+            System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+            ids[pos] = id;
+            size++;
+        }
+
+        void remove(final int id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos >= 0) {
+                System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+                size--;
+            }
+        }
+
+        private void grow() {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+        }
+    }
+}
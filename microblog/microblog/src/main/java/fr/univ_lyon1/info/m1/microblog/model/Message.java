@@ -1,19 +1,42 @@
 package fr.univ_lyon1.info.m1.microblog.model;
 
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Represents a message and its associated data, including content, 
  * creation date, and user-specific metadata.
  */
 public class Message {
+    /** Source of message ids, shared by all messages. */
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    /** Format of the displayed dates, shared since it is immutable and thread-safe. */
+    private static final DateTimeFormatter DATE_FORMAT =
+        DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    private final int id = NEXT_ID.getAndIncrement();
     private String content;
-    private Date dateCreated;
+    /** Creation time, in milliseconds since the epoch. */
+    private long createdAt;
+    /** Creation time formatted with {@link #DATE_FORMAT}, computed on first use. */
+    private volatile String formattedDate;
     private User author;
-    private Map<User, MessageData> messageDataMap;
+    /** Sorted ids of the words of the content, computed once on first use. */
+    private volatile int[] wordIds;
+    /** Store holding this message, told when the date changes (null if none). */
+    private MessageStore store;
+    /**
+     * Per-user state, only for users who changed something (null until then).
+     * Synchronized, since timelines may be rendered off the UI thread.
+     */
+    private volatile Map<User, MessageData> messageDataMap;
 
 
     /**
@@ -25,8 +48,7 @@ public class Message {
     public Message(final String content, final User author) {
         this.content = content;
         this.author = author;
-        this.dateCreated = new Date();
-        this.messageDataMap = new HashMap<>();
+        this.createdAt = System.currentTimeMillis();
     }
 
     /**
@@ -36,8 +58,17 @@ public class Message {
      */
     public Message(final String content) {
         this.content = content;
-        this.dateCreated = new Date();
-        this.messageDataMap = new HashMap<>();
+        this.createdAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Gets the unique id of the message. Ids are assigned at construction and
+     * never change, so they can be used to index messages.
+     *
+     * @return The id of the message.
+     */
+    public int getId() {
+        return id;
     }
 
     /**
@@ -50,33 +81,110 @@ public class Message {
     }
 
     /**
-     * Gets the creation date of the message.
+     * Gets the words of the message as sorted, distinct ids from the
+     * {@link WordDictionary}. The content is tokenized only once; the returned
+     * array is shared and must not be modified.
+     *
+     * @return The sorted word ids of the message.
+     */
+    public int[] getWordIds() {
+        int[] ids = wordIds;
+        if (ids == null) {
+            // Not done in the constructor: subclasses may compute getContent()
+            // from fields that are not initialized yet at that point
+            ids = WordDictionary.tokenize(getContent());
+            wordIds = ids;
+        }
+        return ids;
+    }
+
+    /**
+     * Gets the creation date of the message. The returned date is a copy:
+     * use {@link #setDateCreated(Date)} or {@link #setCreatedAt(long)} to
+     * change it.
      *
      * @return The date when the message was created.
      */
     public Date getDateCreated() {
-        return dateCreated;
+        return new Date(createdAt);
+    }
+
+    /**
+     * Gets the creation time of the message, e.g. to compare messages
+     * without allocating dates.
+     *
+     * @return The creation time, in milliseconds since the epoch.
+     */
+    public long getCreatedAt() {
+        return createdAt;
     }
 
 
     /**
-     * Gets the formatted creation date of the message.
+     * Gets the formatted creation date of the message. It is formatted once
+     * and kept until the date changes.
      *
      * @return The formatted date as a string in "dd/MM/yyyy HH:mm:ss" format.
      */
     public String getFormattedDate() {
-        SimpleDateFormat formatter = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss");
-        return formatter.format(dateCreated);
+        String formatted = formattedDate;
+        if (formatted == null) {
+            formatted = DATE_FORMAT.format(Instant.ofEpochMilli(createdAt));
+            formattedDate = formatted;
+        }
+        return formatted;
     }
 
     /**
      * Gets or creates the message data associated with the specified user.
+     * This allocates per-user state, so it should only be used to modify it;
+     * read-only callers should use {@link #peekMessageData(User)}.
      *
      * @param user The user for which the message data is retrieved or created.
      * @return The message data for the specified user.
      */
     public MessageData getMessageData(final User user) {
-        return messageDataMap.computeIfAbsent(user, k -> new MessageData());
+        Map<User, MessageData> map = messageDataMap;
+        if (map == null) {
+            // Double-checked, so that two threads do not each create a map
+            // and lose the data put in the other one
+            synchronized (this) {
+                map = messageDataMap;
+                if (map == null) {
+                    map = Collections.synchronizedMap(new HashMap<>());
+                    messageDataMap = map;
+                }
+            }
+        }
+        return map.computeIfAbsent(user, k -> new MessageData());
+    }
+
+    /**
+     * Gets the message data associated with the specified user without
+     * allocating anything.
+     *
+     * @param user The user for which the message data is retrieved.
+     * @return The message data for the user, or the shared read-only
+     *         {@link MessageData#DEFAULT} if the user never changed it.
+     */
+    public MessageData peekMessageData(final User user) {
+        Map<User, MessageData> map = messageDataMap;
+        if (map == null) {
+            return MessageData.DEFAULT;
+        }
+        return map.getOrDefault(user, MessageData.DEFAULT);
+    }
+
+    /**
+     * Drops the per-user state of a user if it went back to the default.
+     *
+     * @param user The user whose state may be released.
+     */
+    private void releaseIfEmpty(final User user) {
+        MessageData data = messageDataMap.get(user);
+        if (data != null && data.isEmpty()) {
+            messageDataMap.remove(user);
+        }
     }
 
     /**
@@ -94,19 +202,43 @@ public class Message {
      * @param dateCreated the date to set as the creation date of the message
      */
     public void setDateCreated(final Date dateCreated) {
+        setCreatedAt(dateCreated.getTime());
+    }
 
-        this.dateCreated = dateCreated;
+    /**
+     * Sets the creation time of the message.
+     *
+     * @param createdAt the creation time, in milliseconds since the epoch
+     */
+    public void setCreatedAt(final long createdAt) {
+        this.createdAt = createdAt;
+        this.formattedDate = null;
+        if (store != null) {
+            store.dateChanged(this);
+        }
+    }
 
+    /**
+     * Sets the store holding this message, so that it can re-index the
+     * message when its date changes.
+     *
+     * @param store the store now holding the message, or null
+     */
+    void setStore(final MessageStore store) {
+        this.store = store;
     }
 
     /**
      * Toggles the bookmark status for the message for the specified user.
+     * Only the model calls it, so that bookmark scores stay up to date: use
+     * {@link Y#toggleBookmark(Message, User)}.
      *
      * @param user The user for whom the bookmark status is toggled.
      */
-    public void toggleBookmark(final User user) {
+    void toggleBookmark(final User user) {
         MessageData data = getMessageData(user);
         data.setBookmarked(!data.isBookmarked());
+        releaseIfEmpty(user);
     }
 
     /**
@@ -118,6 +250,7 @@ public class Message {
     public void setTranslatedContent(final String translatedContent, final User user) {
         MessageData data = getMessageData(user);
         data.setTranslatedContent(translatedContent);
+        releaseIfEmpty(user);
     }
 
     /**
@@ -127,8 +260,7 @@ public class Message {
      * @return The translated content for the specified user.
      */
     public String getTranslatedContent(final User user) {
-        MessageData data = getMessageData(user);
-        return data.getTranslatedContent();
+        return peekMessageData(user).getTranslatedContent();
     }
 
     /**
@@ -1,15 +1,28 @@
 package fr.univ_lyon1.info.m1.microblog.model;
 
 import java.util.Date;
-import java.util.HashSet;
-import java.util.Set;
 
 /**
  * Represents data associated with a message for a particular user, including
- * bookmark status, score, and associated words.
+ * bookmark status and score. The words of a message are stored once on the
+ * message itself (see {@link Message#getWordIds()}).
+ *
+ * <p>Long-lived instances only hold what a user actually changed (bookmark,
+ * translation). Untouched (message, user) pairs share {@link #DEFAULT}, and
+ * scores are computed on per-render copies obtained with {@link #snapshot()}.
  */
 public class MessageData {
 
+    /**
+     * Shared, immutable data for messages a user never interacted with.
+     */
+    public static final MessageData DEFAULT = new MessageData(true);
+
+    /**
+     * Whether this instance rejects modifications.
+     */
+    private boolean immutable;
+
     /**
      * Indicates whether the message is bookmarked.
      */
@@ -20,41 +33,69 @@ public class MessageData {
      */
     private int score = -1;
 
+    private String translatedContent;
+    private Date dateCreated;
+
     /**
-     * The set of words associated with the message.
+     * Creates an empty, mutable {@code MessageData}.
      */
-    private Set<String> words = new HashSet<>();
+    public MessageData() {
+        this(false);
+    }
 
-    private String translatedContent;
-    private Date dateCreated;
+    private MessageData(final boolean immutable) {
+        this.immutable = immutable;
+    }
 
     /**
-     * Sets the date when the message was created.
+     * Returns a fresh mutable copy of the user state (bookmark and
+     * translation) with no score, to be scored for a single render.
      *
-     * @param dateCreated the date to set as the creation date of the message
+     * @return a new {@code MessageData} with the same user state
      */
-    public void setDateCreated(final Date dateCreated) {
-
-        this.dateCreated = dateCreated;
+    public MessageData snapshot() {
+        MessageData copy = new MessageData();
+        copy.isBookmarked = isBookmarked;
+        copy.translatedContent = translatedContent;
+        return copy;
+    }
 
+    /**
+     * Makes this data read-only, e.g. once a rendered copy is shared between
+     * several views. Later calls to the setters throw.
+     *
+     * @return this instance
+     */
+    public MessageData freeze() {
+        immutable = true;
+        return this;
     }
 
     /**
-     * Returns the set of words associated with the message.
+     * Tells whether this data carries no user state, i.e. is neither
+     * bookmarked nor translated.
      *
-     * @return the set of words
+     * @return true if this data is equivalent to {@link #DEFAULT}
      */
-    public Set<String> getWords() {
-        return words;
+    public boolean isEmpty() {
+        return !isBookmarked && translatedContent == null;
+    }
+
+    private void checkMutable() {
+        if (immutable) {
+            throw new UnsupportedOperationException("This MessageData is read-only");
+        }
     }
 
     /**
-     * Sets the set of words associated with the message.
+     * Sets the date when the message was created.
      *
-     * @param words the set of words to associate with the message
+     * @param dateCreated the date to set as the creation date of the message
      */
-    public void setWords(final Set<String> words) {
-        this.words = words;
+    public void setDateCreated(final Date dateCreated) {
+        checkMutable();
+        this.dateCreated = dateCreated;
+
     }
 
     /**
@@ -72,6 +113,7 @@ public class MessageData {
      * @param score the score to assign to the message
      */
     public void setScore(final int score) {
+        checkMutable();
         this.score = score;
     }
 
@@ -90,6 +132,7 @@ public class MessageData {
      * @param bookmarked true if the message is bookmarked, false otherwise
      */
     public void setBookmarked(final boolean bookmarked) {
+        checkMutable();
         this.isBookmarked = bookmarked;
     }
 
@@ -119,6 +162,7 @@ public class MessageData {
      * @param translatedContent the translated content to set
      */
     public void setTranslatedContent(final String translatedContent) {
+        checkMutable();
         this.translatedContent = translatedContent;
     }
 
@@ -0,0 +1,331 @@
+package fr.univ_lyon1.info.m1.microblog.model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Indexed storage for the messages of the model. Messages are indexed by
+ * their id (see {@link Message#getId()}) for constant-time lookup and
+ * removal, while an array keeps the insertion order for iteration and
+ * positional access. A second index keeps
+ * the messages sorted by creation date, newest first, so that the
+ * chronological timeline can be read without sorting.
+ */
+public class MessageStore implements Iterable<Message> {
+
+    /**
+     * Messages indexed by id.
+     */
+    private final Map<Integer, Message> byId = new HashMap<>();
+
+    /**
+     * Messages in insertion order. A removed message leaves a null slot,
+     * dropped by {@link #compact()}.
+     */
+    private final ArrayList<Message> order = new ArrayList<>();
+
+    /**
+     * Slot of each message in {@link #order}.
+     */
+    private final Map<Integer, Integer> slots = new HashMap<>();
+
+    /**
+     * Number of null slots in {@link #order}.
+     */
+    private int holes;
+
+    /**
+     * Number of additions and removals, checked by the iterators so that
+     * they fail fast when the store changes under them.
+     */
+    private int modCount;
+
+    /**
+     * Number of compactions of {@link #order}, after which the iterators look
+     * up their position again.
+     */
+    private int compactions;
+
+    /**
+     * Messages sorted by (creation time, id).
+     */
+    private final ConcurrentSkipListMap<TimeKey, Message> byTime = new ConcurrentSkipListMap<>();
+
+    /**
+     * Key of each message in {@link #byTime}, as it was when last indexed.
+     */
+    private final Map<Integer, TimeKey> timeKeys = new HashMap<>();
+
+    /**
+     * Number of changes made to the store: additions, removals and date
+     * changes.
+     */
+    private long version;
+
+    /**
+     * Read-only list view over the stored messages, in insertion order.
+     */
+    private final List<Message> view = new AbstractList<Message>() {
+        @Override
+        public Message get(final int index) {
+            if (index < 0 || index >= byId.size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + byId.size());
+            }
+            compact();
+            return order.get(index);
+        }
+
+        @Override
+        public Iterator<Message> iterator() {
+            return MessageStore.this.iterator();
+        }
+
+        @Override
+        public int size() {
+            return byId.size();
+        }
+
+        @Override
+        public boolean contains(final Object o) {
+            return o instanceof Message && MessageStore.this.contains((Message) o);
+        }
+    };
+
+    /**
+     * Adds a message at the end of the store.
+     *
+     * @param message the message to add
+     * @return true if the message was added, false if it was already stored
+     */
+    public boolean add(final Message message) {
+        if (byId.putIfAbsent(message.getId(), message) != null) {
+            return false;
+        }
+        slots.put(message.getId(), order.size());
+        order.add(message);
+        modCount++;
+        indexTime(message);
+        message.setStore(this);
+        version++;
+        return true;
+    }
+
+    /**
+     * Removes a message from the store.
+     *
+     * @param message the message to remove
+     * @return true if the message was stored and has been removed
+     */
+    public boolean remove(final Message message) {
+        if (!byId.remove(message.getId(), message)) {
+            return false;
+        }
+        order.set(slots.remove(message.getId()), null);
+        holes++;
+        modCount++;
+        if (holes > order.size() / 2) {
+            // Keep iteration linear in the number of messages
+            compact();
+        }
+        byTime.remove(timeKeys.remove(message.getId()));
+        message.setStore(null);
+        version++;
+        return true;
+    }
+
+    // Drops the null slots left by removals, so that positions in order are
+    // positions in the list view again.
+    private void compact() {
+        if (holes == 0) {
+            return;
+        }
+        int size = 0;
+        for (Message m : order) {
+            if (m != null) {
+                order.set(size, m);
+                slots.put(m.getId(), size);
+                size++;
+            }
+        }
+        order.subList(size, order.size()).clear();
+        holes = 0;
+        compactions++;
+    }
+
+    /**
+     * Moves a stored message in the time index after its creation date changed.
+     *
+     * @param message the message whose date changed
+     */
+    void dateChanged(final Message message) {
+        if (contains(message)) {
+            byTime.remove(timeKeys.remove(message.getId()));
+            indexTime(message);
+            version++;
+        }
+    }
+
+    private void indexTime(final Message message) {
+        TimeKey key = new TimeKey(message.getCreatedAt(), message.getId());
+        timeKeys.put(message.getId(), key);
+        byTime.put(key, message);
+    }
+
+    /**
+     * Looks up a message by id.
+     *
+     * @param id the id of the message
+     * @return the message with this id, or null if there is none
+     */
+    public Message get(final int id) {
+        return byId.get(id);
+    }
+
+    /**
+     * Tells whether a message is in the store.
+     *
+     * @param message the message to look for
+     * @return true if the message is stored
+     */
+    public boolean contains(final Message message) {
+        return byId.get(message.getId()) == message;
+    }
+
+    /**
+     * Returns the version of the store, which grows with every addition,
+     * removal or date change, so that two equal versions mean the same
+     * messages in the same order.
+     *
+     * @return the number of changes made to the store
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the number of stored messages.
+     *
+     * @return the number of messages
+     */
+    public int size() {
+        return byId.size();
+    }
+
+    /**
+     * Returns a live, read-only list view of the messages in insertion order.
+     * Positional access takes constant time (amortized after removals).
+     *
+     * @return the messages as an unmodifiable list
+     */
+    public List<Message> asList() {
+        return view;
+    }
+
+    /**
+     * Returns a read-only view of the messages sorted by creation date (newest
+     * first, ties broken by increasing id). Iterating it does not sort
+     * anything.
+     *
+     * @return the messages in reverse chronological order
+     */
+    public Collection<Message> newestFirst() {
+        return Collections.unmodifiableCollection(byTime.values());
+    }
+
+    /**
+     * Returns a read-only view of the messages after a position of the time
+     * index, i.e. older than (time, id) in the order of {@link #newestFirst()}.
+     * Reading the first messages of the view does not visit the newer ones.
+     *
+     * @param time the creation time of the position
+     * @param id the message id of the position, breaking ties
+     * @return the messages strictly after the position, newest first
+     */
+    public Collection<Message> newestFirstAfter(final long time, final int id) {
+        return Collections.unmodifiableCollection(
+            byTime.tailMap(new TimeKey(time, id), false).values());
+    }
+
+    /**
+     * Returns an iterator over the messages, in insertion order. It fails
+     * fast with a {@link ConcurrentModificationException} if a message is
+     * added or removed while it is in use; reads, which may compact the
+     * store, do not disturb it.
+     *
+     * @return an iterator over the stored messages
+     */
+    @Override
+    public Iterator<Message> iterator() {
+        return new Iterator<Message>() {
+            private final int expectedModCount = modCount;
+            private int seenCompactions = compactions;
+            private Message last;
+            private int next = skipHoles(0);
+
+            @Override
+            public boolean hasNext() {
+                checkPosition();
+                return next < order.size();
+            }
+
+            @Override
+            public Message next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                last = order.get(next);
+                next = skipHoles(next + 1);
+                return last;
+            }
+
+            // Fails if the store changed, or finds the position again after a
+            // compaction moved the messages
+            private void checkPosition() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (seenCompactions != compactions) {
+                    seenCompactions = compactions;
+                    next = last == null ? 0 : skipHoles(slots.get(last.getId()) + 1);
+                }
+            }
+        };
+    }
+
+    // First slot at or after i holding a message
+    private int skipHoles(final int i) {
+        int slot = i;
+        while (slot < order.size() && order.get(slot) == null) {
+            slot++;
+        }
+        return slot;
+    }
+
+    /**
+     * Position of a message in the time index: newest first, then by id.
+     */
+    private static final class TimeKey implements Comparable<TimeKey> {
+        private final long time;
+        private final int id;
+
+        TimeKey(final long time, final int id) {
+            this.time = time;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(final TimeKey other) {
+            int c = Long.compare(other.time, time);
+            return c != 0 ? c : Integer.compare(id, other.id);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package fr.univ_lyon1.info.m1.microblog.model;
+
+/**
+ * A change made to the model, delivered to {@link IModelDeltaListener}s so
+ * that they update only what it affects.
+ */
+public final class ModelChange {
+
+    /**
+     * Kinds of changes.
+     */
+    public enum Kind {
+        /** A user was created. */
+        USER_ADDED,
+        /** A message was added. */
+        MESSAGE_ADDED,
+        /** A message was deleted. */
+        MESSAGE_REMOVED,
+        /** The data of a message changed for a user (bookmark, translation). */
+        DATA_CHANGED
+    }
+
+    private final Kind kind;
+    private final User user;
+    private final Message message;
+
+    private ModelChange(final Kind kind, final User user, final Message message) {
+        this.kind = kind;
+        this.user = user;
+        this.message = message;
+    }
+
+    /**
+     * Creates the change of a new user.
+     *
+     * @param user the created user
+     * @return the change
+     */
+    public static ModelChange userAdded(final User user) {
+        return new ModelChange(Kind.USER_ADDED, user, null);
+    }
+
+    /**
+     * Creates the change of a new message.
+     *
+     * @param message the added message
+     * @return the change
+     */
+    public static ModelChange messageAdded(final Message message) {
+        return new ModelChange(Kind.MESSAGE_ADDED, null, message);
+    }
+
+    /**
+     * Creates the change of a deleted message.
+     *
+     * @param message the deleted message
+     * @return the change
+     */
+    public static ModelChange messageRemoved(final Message message) {
+        return new ModelChange(Kind.MESSAGE_REMOVED, null, message);
+    }
+
+    /**
+     * Creates the change of the data of a message for a user.
+     *
+     * @param message the message whose data changed
+     * @param user the user the data belongs to
+     * @return the change
+     */
+    public static ModelChange dataChanged(final Message message, final User user) {
+        return new ModelChange(Kind.DATA_CHANGED, user, message);
+    }
+
+    /**
+     * Returns the kind of the change.
+     *
+     * @return the kind
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns the user concerned by the change.
+     *
+     * @return the user, or null for changes of messages only
+     */
+    public User getUser() {
+        return user;
+    }
+
+    /**
+     * Returns the message concerned by the change.
+     *
+     * @return the message, or null for a new user
+     */
+    public Message getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return kind + (user != null ? " " + user.getId() : "")
+            + (message != null ? " #" + message.getId() : "");
+    }
+}
@@ -1,8 +1,8 @@
 package fr.univ_lyon1.info.m1.microblog.model;
 
-import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.function.BiPredicate;
+import java.util.stream.Stream;
 
 /**
  * La classe MostRelevantStrategy filtre et trie les messages pour afficher les plus pertinents
@@ -15,63 +15,64 @@ public class MostRelevantStrategy implements DisplayStrategy {
     private static final int SCORE_THRESHOLD = 0;
 
     /**
-     * Filtre et trie les messages pour n'afficher que ceux ayant un score supérieur ou égal
-     * au seuil défini, triés par score décroissant et date décroissante pour les ex-æquo.
+     * Messages affichés : les messages bookmarkés et ceux dont le score atteint
+     * le seuil.
+     */
+    private static final BiPredicate<Message, MessageData> FILTER = (m, d) ->
+        d.isBookmarked() || d.getScore() >= SCORE_THRESHOLD;
+
+    /**
+     * Ordre d'affichage : messages bookmarkés d'abord, puis score décroissant,
+     * puis date décroissante.
+     */
+    private static final PackedKeySorter.KeyFunction KEY = (m, d) ->
+        PackedKeySorter.pack(d.isBookmarked(), d.getScore(), m.getCreatedAt(), true);
+
+    /**
+     * Parcourt les messages ayant un score supérieur ou égal au seuil défini,
+     * par score décroissant et date décroissante pour les ex-æquo. Les
+     * messages bookmarkés sont toujours gardés et affichés en premier. L'ordre
+     * est calculé au fur et à mesure de la lecture (voir
+     * {@link PackedKeySorter#stream}).
      *
      * @param messagesData une map contenant les messages et leurs données associées
-     * @return un LinkedHashMap des messages filtrés et triés
+     * @return les couples (message, données) dans l'ordre d'affichage
      */
     @Override
-    public LinkedHashMap<Message, MessageData> filterAndSortMessages(
-        final Map<Message, MessageData> messagesData) {
-        // Séparer les messages bookmarkés des autres
-        Map<Message, MessageData> bookmarkedMessages = messagesData.entrySet().stream()
-            .filter(e -> e.getValue().isBookmarked())
-            .collect(Collectors.toMap(
-                Map.Entry::getKey,
-                Map.Entry::getValue
-            ));
-
-        // Filtrer et trier les messages non bookmarkés
-        LinkedHashMap<Message, MessageData> 
-            sortedNonBookmarkedMessages = messagesData.entrySet().stream()
-            .filter(e -> e.getValue().getScore() >= SCORE_THRESHOLD && !e.getValue().isBookmarked())
-            .sorted((e1, e2) -> {
-                int scoreComparison = Integer.compare(
-                    e2.getValue().getScore(), e1.getValue().getScore());
-                if (scoreComparison != 0) {
-                    return scoreComparison;
-                }
-                return e2.getKey().getDateCreated().compareTo(e1.getKey().getDateCreated());
-            })
-            .collect(Collectors.toMap(
-                Map.Entry::getKey,
-                Map.Entry::getValue,
-                (e1, e2) -> e1,
-                LinkedHashMap::new
-            ));
-
-        // Combiner les messages bookmarkés en premier
-        LinkedHashMap<Message, MessageData> finalSortedMessages = new LinkedHashMap<>();
-
-        // Ajouter les messages bookmarkés en premier
-        bookmarkedMessages.entrySet().stream()
-            .sorted((e1, e2) -> {
-                int scoreComparison = Integer.compare(
-                    e2.getValue().getScore(), e1.getValue().getScore());
-                if (scoreComparison != 0) {
-                    return scoreComparison;
-                }
-                return e2.getKey().getDateCreated().compareTo(e1.getKey().getDateCreated());
-            })
-            .forEachOrdered(e -> finalSortedMessages.put(e.getKey(), e.getValue()));
-
-        // Ajouter les messages non bookmarkés
-        finalSortedMessages.putAll(sortedNonBookmarkedMessages);
+    public Stream<Map.Entry<Message, MessageData>> streamMessages(
+            final Map<Message, MessageData> messagesData) {
+        return PackedKeySorter.stream(messagesData, FILTER, KEY);
+    }
 
-        return finalSortedMessages;
+    /**
+     * Lit une page dans le même ordre, en ne triant que les messages situés
+     * après le curseur. Les ex-æquo sont départagés par id.
+     *
+     * @param messagesData une map contenant les messages et leurs données associées
+     * @param cursor le curseur de la page précédente, ou null pour la première page
+     * @param pageSize le nombre maximal de messages de la page
+     * @return la page et le curseur de la suivante
+     */
+    @Override
+    public TimelinePage filterAndSortPage(final Map<Message, MessageData> messagesData,
+            final String cursor, final int pageSize) {
+        return PackedKeySorter.page(messagesData, FILTER, KEY, cursor, pageSize);
     }
 
+    /**
+     * Compare la position du message à celle du curseur, comme
+     * {@link #filterAndSortPage}.
+     *
+     * @param message le message
+     * @param data ses données, score calculé
+     * @param cursor le curseur de la dernière page lue, ou null
+     * @return vrai si le message est gardé et trié avant le curseur
+     */
+    @Override
+    public boolean isShownUpTo(final Message message, final MessageData data,
+            final String cursor) {
+        return PackedKeySorter.isShownUpTo(message, data, FILTER, KEY, cursor);
+    }
 
     /**
      * Retourne le nom de la stratégie pour l'affichage dans l'interface utilisateur.
@@ -0,0 +1,458 @@
+package fr.univ_lyon1.info.m1.microblog.model;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Sorting engine of the display strategies. Each message gets a single
+ * {@code long} key packing what it is ordered by, most significant first:
+ * <pre>
+ *   [ flag : 1 bit ][ score : 21 bits ][ creation time : 42 bits ]
+ * </pre>
+ * The keys are compared as unsigned numbers, smallest first. They are sorted
+ * in a {@code long[]} together with an {@code int[]} of message positions by
+ * a least-significant-digit radix sort, one byte at a time, which is stable:
+ * messages with equal keys keep the order of the map. The result map is built
+ * once, at the end. Nothing is boxed and no comparator is called. When only
+ * the first messages are read (see {@link #stream}), they are taken out of a
+ * heap of the keys instead of sorting them all.
+ */
+public final class PackedKeySorter {
+
+    private static final int TIME_BITS = 42;
+    private static final int SCORE_BITS = 21;
+    private static final long TIME_MAX = (1L << TIME_BITS) - 1;
+    private static final long SCORE_MAX = (1L << SCORE_BITS) - 1;
+    private static final int SCORE_BIAS = 1 << (SCORE_BITS - 1);
+
+    /** Below this size, an insertion sort is cheaper than the radix passes. */
+    private static final int INSERTION_SORT_MAX = 32;
+
+    /** Once this share of a lazy order has been read, the rest is sorted at once. */
+    private static final int EAGER_SORT_RATIO = 16;
+
+    private static final int STREAM_CHARACTERISTICS =
+        Spliterator.ORDERED | Spliterator.SIZED | Spliterator.NONNULL;
+
+    // Constructeur privé pour empêcher l'instanciation
+    private PackedKeySorter() {
+    }
+
+    /**
+     * Computes the sort key of a message, e.g. with {@link #pack}.
+     */
+    @FunctionalInterface
+    public interface KeyFunction {
+        /**
+         * Returns the key of a message; smaller keys come first.
+         *
+         * @param message the message
+         * @param data its data for the user
+         * @return the key, compared as an unsigned number
+         */
+        long key(Message message, MessageData data);
+    }
+
+    /**
+     * Packs the fields of the display order into a key.
+     *
+     * @param first whether the message comes before all the messages
+     *              without the flag (e.g. bookmarked messages)
+     * @param score the score, higher scores first; clamped to 21 bits
+     * @param time the creation time in milliseconds since the epoch, clamped
+     *             to 42 bits (until year 2109)
+     * @param newestFirst whether recent messages come first
+     * @return the key
+     */
+    public static long pack(final boolean first, final int score, final long time,
+            final boolean newestFirst) {
+        long s = Math.max(0, Math.min(SCORE_MAX, (long) score + SCORE_BIAS));
+        long t = Math.max(0, Math.min(TIME_MAX, time));
+        return (first ? 0L : 1L << 63)
+            | (SCORE_MAX - s) << TIME_BITS
+            | (newestFirst ? TIME_MAX - t : t);
+    }
+
+    /**
+     * Filters messages and streams them by key, computing the order lazily:
+     * the kept messages are put in a binary heap, in linear time, and each
+     * message read is taken from it. A consumer reading the first messages
+     * only pays for those; once a sixteenth of them has been read, the rest
+     * is radix sorted at once. Nothing is done before the stream is consumed.
+     * Messages with equal keys keep the order of the map.
+     *
+     * @param messagesData the messages and their data, which must not change
+     *                     while the stream is read
+     * @param filter the messages to keep
+     * @param key the key of a message
+     * @return the kept messages and their data, by increasing key
+     */
+    public static Stream<Map.Entry<Message, MessageData>> stream(
+            final Map<Message, MessageData> messagesData,
+            final BiPredicate<Message, MessageData> filter, final KeyFunction key) {
+        return StreamSupport.stream(() -> {
+            Candidates c = new Candidates(messagesData, filter, key, null);
+            LazyOrder order = new LazyOrder(c.keys, null, c.count, 0);
+            Iterator<Map.Entry<Message, MessageData>> it =
+                new Iterator<Map.Entry<Message, MessageData>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return order.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<Message, MessageData> next() {
+                        int p = order.next();
+                        return new AbstractMap.SimpleImmutableEntry<>(c.messages[p], c.data[p]);
+                    }
+
+                    @Override
+                    public void forEachRemaining(
+                            final Consumer<? super Map.Entry<Message, MessageData>> action) {
+                        // Everything will be read: no need for the heap
+                        order.sortRemaining();
+                        while (hasNext()) {
+                            action.accept(next());
+                        }
+                    }
+                };
+            return Spliterators.spliterator(it, c.count, STREAM_CHARACTERISTICS);
+        }, STREAM_CHARACTERISTICS, false);
+    }
+
+    /**
+     * Filters and sorts messages by key. This reads the first {@code limit}
+     * messages of {@link #stream}: a small limit only costs a heap, a large
+     * one a radix sort of all the kept messages.
+     *
+     * @param messagesData the messages and their data
+     * @param filter the messages to keep
+     * @param key the key of a message
+     * @param limit the maximum number of messages to return
+     * @return the first {@code limit} kept messages, by increasing key
+     */
+    public static LinkedHashMap<Message, MessageData> sort(
+            final Map<Message, MessageData> messagesData,
+            final BiPredicate<Message, MessageData> filter,
+            final KeyFunction key, final int limit) {
+        Candidates c = new Candidates(messagesData, filter, key, null);
+        LazyOrder order = new LazyOrder(c.keys, null, c.count, limit);
+        int size = Math.max(0, Math.min(limit, c.count));
+        LinkedHashMap<Message, MessageData> result = new LinkedHashMap<>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; i++) {
+            int p = order.next();
+            result.put(c.messages[p], c.data[p]);
+        }
+        return result;
+    }
+
+    /**
+     * Reads a page of the messages sorted by key. Messages with equal keys are
+     * ordered by id, so that the order does not depend on the map and a
+     * cursor always falls between two messages. Only the messages after the
+     * cursor are considered, and only the page is taken out of their heap.
+     *
+     * @param messagesData the messages and their data
+     * @param filter the messages to keep
+     * @param key the key of a message
+     * @param cursor the cursor returned with the previous page, or null for
+     *               the first page
+     * @param pageSize the maximum number of messages of the page
+     * @return the page, whose cursor holds the key and id of its last message
+     * @throws IllegalArgumentException if the cursor is invalid
+     */
+    public static TimelinePage page(final Map<Message, MessageData> messagesData,
+            final BiPredicate<Message, MessageData> filter,
+            final KeyFunction key, final String cursor, final int pageSize) {
+        Candidates c = new Candidates(messagesData, filter, key,
+            TimelineCursor.decode(cursor));
+        int[] ids = new int[c.count];
+        for (int i = 0; i < c.count; i++) {
+            ids[i] = c.messages[i].getId();
+        }
+        int size = Math.max(0, Math.min(pageSize, c.count));
+        LazyOrder order = new LazyOrder(c.keys, ids, c.count, size + 1);
+        LinkedHashMap<Message, MessageData> result = new LinkedHashMap<>(size * 4 / 3 + 1);
+        int last = -1;
+        for (int i = 0; i < size; i++) {
+            last = order.next();
+            result.put(c.messages[last], c.data[last]);
+        }
+        String next = null;
+        if (size < c.count && last >= 0) {
+            next = new TimelineCursor(c.keys[last], ids[last]).encode();
+        }
+        return new TimelinePage(result, next);
+    }
+
+    /**
+     * Tells whether a message is kept and sorted before a cursor returned by
+     * {@link #page}, i.e. whether it belongs to the pages read up to it.
+     *
+     * @param message the message
+     * @param data its data
+     * @param filter the messages to keep
+     * @param key the key of a message
+     * @param cursor the cursor of the last page read, or null if every page
+     *               was read
+     * @return true if the message is in one of those pages
+     * @throws IllegalArgumentException if the cursor is invalid
+     */
+    public static boolean isShownUpTo(final Message message, final MessageData data,
+            final BiPredicate<Message, MessageData> filter, final KeyFunction key,
+            final String cursor) {
+        if (!filter.test(message, data)) {
+            return false;
+        }
+        TimelineCursor after = TimelineCursor.decode(cursor);
+        return after == null || !after.isBefore(key.key(message, data), message.getId());
+    }
+
+    /**
+     * Sorts the first {@code count} keys, as unsigned numbers, and applies the
+     * same permutation to the values. The sort is stable.
+     *
+     * @param keys the keys
+     * @param values the values, e.g. positions, moved along with their key
+     * @param count the number of keys to sort
+     */
+    static void sort(final long[] keys, final int[] values, final int count) {
+        if (count <= INSERTION_SORT_MAX) {
+            insertionSort(keys, values, count);
+            return;
+        }
+        // Histograms of all the bytes in a single pass
+        int[][] counts = new int[8][256];
+        for (int i = 0; i < count; i++) {
+            long k = keys[i];
+            for (int b = 0; b < 8; b++) {
+                counts[b][(int) (k >>> (b * 8)) & 0xFF]++;
+            }
+        }
+        long[] srcKeys = keys;
+        int[] srcValues = values;
+        long[] dstKeys = new long[count];
+        int[] dstValues = new int[count];
+        for (int b = 0; b < 8; b++) {
+            int[] c = counts[b];
+            int shift = b * 8;
+            // Skip the bytes that are the same for all keys
+            if (c[(int) (srcKeys[0] >>> shift) & 0xFF] == count) {
+                continue;
+            }
+            int offset = 0;
+            for (int d = 0; d < 256; d++) {
+                int size = c[d];
+                c[d] = offset;
+                offset += size;
+            }
+            for (int i = 0; i < count; i++) {
+                long k = srcKeys[i];
+                int pos = c[(int) (k >>> shift) & 0xFF]++;
+                dstKeys[pos] = k;
+                dstValues[pos] = srcValues[i];
+            }
+            long[] tk = srcKeys;
+            srcKeys = dstKeys;
+            dstKeys = tk;
+            int[] tv = srcValues;
+            srcValues = dstValues;
+            dstValues = tv;
+        }
+        if (srcKeys != keys) {
+            System.arraycopy(srcKeys, 0, keys, 0, count);
+            System.arraycopy(srcValues, 0, values, 0, count);
+        }
+    }
+
+    private static void insertionSort(final long[] keys, final int[] values, final int count) {
+        for (int i = 1; i < count; i++) {
+            long k = keys[i];
+            int v = values[i];
+            int j = i - 1;
+            while (j >= 0 && Long.compareUnsigned(keys[j], k) > 0) {
+                keys[j + 1] = keys[j];
+                values[j + 1] = values[j];
+                j--;
+            }
+            keys[j + 1] = k;
+            values[j + 1] = v;
+        }
+    }
+
+    /**
+     * The messages kept by a filter, with their key, in the order of the map.
+     */
+    private static final class Candidates {
+        private final Message[] messages;
+        private final MessageData[] data;
+        private final long[] keys;
+        private int count;
+
+        Candidates(final Map<Message, MessageData> messagesData,
+                final BiPredicate<Message, MessageData> filter, final KeyFunction key,
+                final TimelineCursor after) {
+            int n = messagesData.size();
+            messages = new Message[n];
+            data = new MessageData[n];
+            keys = new long[n];
+            for (Map.Entry<Message, MessageData> e : messagesData.entrySet()) {
+                Message m = e.getKey();
+                if (filter.test(m, e.getValue())) {
+                    long k = key.key(m, e.getValue());
+                    if (after == null || after.isBefore(k, m.getId())) {
+                        messages[count] = m;
+                        data[count] = e.getValue();
+                        keys[count] = k;
+                        count++;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Order of the positions 0 to count - 1 by unsigned key, then by tie
+     * value (the position itself by default), computed as it is read: the
+     * positions are taken one by one out of a binary heap until a sixteenth
+     * of them has been read, then the rest is radix sorted at once. If
+     * everything is read, it is radix sorted right away.
+     */
+    private static final class LazyOrder {
+        private final long[] keys;
+        private final int[] ties;
+        private final int switchAt;
+        private int[] heap;
+        private int heapSize;
+        private boolean heapified;
+        private int[] sorted;
+        private int sortedSize;
+        private int sortedNext;
+        private int read;
+
+        /**
+         * Creates the order.
+         *
+         * @param keys the key of each position
+         * @param ties the tie value of each position, or null to use the
+         *             position, e.g. to keep the order of the map
+         * @param count the number of positions
+         * @param expected how many positions will probably be read: if it
+         *                 is not small, everything is sorted right away
+         */
+        LazyOrder(final long[] keys, final int[] ties, final int count, final int expected) {
+            this.keys = keys;
+            this.ties = ties;
+            this.switchAt = count / EAGER_SORT_RATIO;
+            int[] positions = new int[count];
+            for (int i = 0; i < count; i++) {
+                positions[i] = i;
+            }
+            heap = positions;
+            heapSize = count;
+            if (expected > switchAt) {
+                sortRemaining();
+            }
+        }
+
+        // Sorts everything not read yet at once, e.g. when all of it will be
+        // read
+        void sortRemaining() {
+            if (sorted == null) {
+                sortAll(heap, heapSize, !heapified && ties == null);
+                heap = null;
+                heapSize = 0;
+            }
+        }
+
+        boolean hasNext() {
+            return sorted != null ? sortedNext < sortedSize : heapSize > 0;
+        }
+
+        int next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (sorted == null && read >= switchAt) {
+                sortRemaining();
+            }
+            if (sorted == null && !heapified) {
+                // The heap is only built once the first position is read
+                for (int i = heapSize / 2 - 1; i >= 0; i--) {
+                    siftDown(i);
+                }
+                heapified = true;
+            }
+            read++;
+            if (sorted != null) {
+                return sorted[sortedNext++];
+            }
+            int top = heap[0];
+            heap[0] = heap[--heapSize];
+            siftDown(0);
+            return top;
+        }
+
+        // Radix sorts positions; the sort is stable, so they are first put
+        // in tie order unless they already are
+        private void sortAll(final int[] positions, final int size, final boolean inTieOrder) {
+            if (!inTieOrder) {
+                long[] byTie = new long[size];
+                for (int i = 0; i < size; i++) {
+                    byTie[i] = (long) tie(positions[i]) << 32 | positions[i];
+                }
+                Arrays.sort(byTie);
+                for (int i = 0; i < size; i++) {
+                    positions[i] = (int) byTie[i];
+                }
+            }
+            long[] sortedKeys = new long[size];
+            for (int i = 0; i < size; i++) {
+                sortedKeys[i] = keys[positions[i]];
+            }
+            sort(sortedKeys, positions, size);
+            sorted = positions;
+            sortedSize = size;
+            sortedNext = 0;
+        }
+
+        private int tie(final int position) {
+            return ties == null ? position : ties[position];
+        }
+
+        private boolean less(final int a, final int b) {
+            int c = Long.compareUnsigned(keys[a], keys[b]);
+            return c < 0 || c == 0 && tie(a) < tie(b);
+        }
+
+        private void siftDown(final int index) {
+            int i = index;
+            int p = heap[i];
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= heapSize) {
+                    break;
+                }
+                if (child + 1 < heapSize && less(heap[child + 1], heap[child])) {
+                    child++;
+                }
+                if (!less(heap[child], p)) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = p;
+        }
+    }
+}
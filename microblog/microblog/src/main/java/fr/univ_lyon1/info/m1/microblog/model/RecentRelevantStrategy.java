@@ -1,8 +1,8 @@
 package fr.univ_lyon1.info.m1.microblog.model;
 
-import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.function.BiPredicate;
+import java.util.stream.Stream;
 
 /**
  * La classe RecentRelevantStrategy est une implémentation de l'interface DisplayStrategy
@@ -16,33 +16,60 @@ public class RecentRelevantStrategy implements DisplayStrategy {
     private static final int SCORE_THRESHOLD = 0;
 
     /**
-     * Filtre et trie les messages pour afficher uniquement ceux ayant un score supérieur
-     * au seuil défini et en mettant en avant les messages récents.
+     * Messages affichés : ceux dont le score dépasse le seuil.
+     */
+    private static final BiPredicate<Message, MessageData> FILTER = (m, d) ->
+        d.getScore() > SCORE_THRESHOLD;
+
+    /**
+     * Ordre d'affichage : score décroissant, puis date décroissante.
+     */
+    private static final PackedKeySorter.KeyFunction KEY = (m, d) ->
+        PackedKeySorter.pack(false, d.getScore(), m.getCreatedAt(), true);
+
+    /**
+     * Parcourt uniquement les messages ayant un score supérieur au seuil
+     * défini, par pertinence puis en mettant en avant les messages récents.
+     * L'ordre est calculé au fur et à mesure de la lecture (voir
+     * {@link PackedKeySorter#stream}).
      *
      * @param messagesData une map contenant les messages et leurs données associées
-     * @return un LinkedHashMap des messages filtrés et triés par pertinence et date
+     * @return les couples (message, données) dans l'ordre d'affichage
+     */
+    @Override
+    public Stream<Map.Entry<Message, MessageData>> streamMessages(
+            final Map<Message, MessageData> messagesData) {
+        return PackedKeySorter.stream(messagesData, FILTER, KEY);
+    }
+
+    /**
+     * Lit une page dans le même ordre, en ne triant que les messages situés
+     * après le curseur. Les ex-æquo sont départagés par id.
+     *
+     * @param messagesData une map contenant les messages et leurs données associées
+     * @param cursor le curseur de la page précédente, ou null pour la première page
+     * @param pageSize le nombre maximal de messages de la page
+     * @return la page et le curseur de la suivante
+     */
+    @Override
+    public TimelinePage filterAndSortPage(final Map<Message, MessageData> messagesData,
+            final String cursor, final int pageSize) {
+        return PackedKeySorter.page(messagesData, FILTER, KEY, cursor, pageSize);
+    }
+
+    /**
+     * Compare la position du message à celle du curseur, comme
+     * {@link #filterAndSortPage}.
+     *
+     * @param message le message
+     * @param data ses données, score calculé
+     * @param cursor le curseur de la dernière page lue, ou null
+     * @return vrai si le message est gardé et trié avant le curseur
      */
     @Override
-    public LinkedHashMap<Message, MessageData> filterAndSortMessages(
-        final Map<Message, MessageData> messagesData) {
-        return messagesData.entrySet().stream()
-            .filter(e -> e.getValue().getScore() > SCORE_THRESHOLD)
-            .sorted((e1, e2) -> {
-                // Tri par score en ordre décroissant
-                int scoreComparison = Integer.compare(
-                    e2.getValue().getScore(), e1.getValue().getScore());
-                if (scoreComparison != 0) {
-                    return scoreComparison;
-                }
-                // En cas d'égalité de score, tri par date en ordre décroissant
-                return e2.getKey().getDateCreated().compareTo(e1.getKey().getDateCreated());
-            })
-            .collect(Collectors.toMap(
-                Map.Entry::getKey,
-                Map.Entry::getValue,
-                (e1, e2) -> e1,
-                LinkedHashMap::new
-            ));
+    public boolean isShownUpTo(final Message message, final MessageData data,
+            final String cursor) {
+        return PackedKeySorter.isShownUpTo(message, data, FILTER, KEY, cursor);
     }
 
     /**
@@ -0,0 +1,160 @@
+package fr.univ_lyon1.info.m1.microblog.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Reusable sequence of {@link ScoringStage}s applied in a single pass over the
+ * messages: each message is scored by all stages, in order, before moving to
+ * the next one. Contributions of stateless stages (see
+ * {@link ScoringStage#isStateless()}) are computed once per message and
+ * reused by the following renders. The time spent in each stage is measured
+ * on a sample of the messages and accumulated, with the number of calls, in
+ * counters updated once per run.
+ */
+public class ScoringPipeline {
+
+    /**
+     * One message in this many has its stages timed.
+     */
+    static final int TIMING_SAMPLE = 16;
+
+    /**
+     * The stages, in the order they are applied.
+     */
+    private final List<ScoringStage> stages;
+
+    /**
+     * Contributions of each stateless stage by message (null for the other
+     * stages), guarded by the list itself. Weak keys, so that deleted
+     * messages do not stay in the memo.
+     */
+    private final List<Map<Message, Integer>> memos = new ArrayList<>();
+
+    /**
+     * Nanoseconds spent in each stage.
+     */
+    private final AtomicLongArray stageNanos;
+
+    /**
+     * Number of messages scored by each stage, memo hits excluded.
+     */
+    private final AtomicLongArray stageCalls;
+
+    /**
+     * Creates a pipeline applying the given stages in order.
+     *
+     * @param stages the stages of the pipeline
+     */
+    public ScoringPipeline(final List<ScoringStage> stages) {
+        this.stages = Collections.unmodifiableList(new ArrayList<>(stages));
+        for (ScoringStage stage : this.stages) {
+            memos.add(stage.isStateless() ? new WeakHashMap<>() : null);
+        }
+        this.stageNanos = new AtomicLongArray(stages.size());
+        this.stageCalls = new AtomicLongArray(stages.size());
+    }
+
+    /**
+     * Creates a pipeline applying the given stages in order.
+     *
+     * @param stages the stages of the pipeline
+     * @return the new pipeline
+     */
+    public static ScoringPipeline of(final ScoringStage... stages) {
+        return new ScoringPipeline(Arrays.asList(stages));
+    }
+
+    /**
+     * Sets the score of each message to the sum of the contributions of all
+     * stages, in a single pass. Runs are serialized by the memo of the
+     * stateless stages, locked once per run.
+     *
+     * @param user the user viewing the messages
+     * @param messagesData the messages and their (per-render) data
+     */
+    public void computeScores(final User user, final Map<Message, MessageData> messagesData) {
+        int count = stages.size();
+        long[] nanos = new long[count];
+        long[] calls = new long[count];
+        long position = 0;
+        synchronized (memos) {
+            for (Map.Entry<Message, MessageData> entry : messagesData.entrySet()) {
+                Message message = entry.getKey();
+                MessageData data = entry.getValue();
+                boolean timed = position++ % TIMING_SAMPLE == 0;
+                int score = 0;
+                for (int i = 0; i < count; i++) {
+                    Map<Message, Integer> memo = memos.get(i);
+                    Integer known = memo != null ? memo.get(message) : null;
+                    if (known != null) {
+                        score += known;
+                        continue;
+                    }
+                    long start = timed ? System.nanoTime() : 0;
+                    int value = stages.get(i).contribution(user, message, data);
+                    if (timed) {
+                        nanos[i] += System.nanoTime() - start;
+                    }
+                    calls[i]++;
+                    if (memo != null) {
+                        memo.put(message, value);
+                    }
+                    score += value;
+                }
+                data.setScore(score);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            // Timed messages stand for the TIMING_SAMPLE - 1 following ones
+            stageNanos.addAndGet(i, nanos[i] * TIMING_SAMPLE);
+            stageCalls.addAndGet(i, calls[i]);
+        }
+    }
+
+    /**
+     * Returns the stages of the pipeline, in order.
+     *
+     * @return an unmodifiable list of the stages
+     */
+    public List<ScoringStage> getStages() {
+        return stages;
+    }
+
+    /**
+     * Returns the time spent in a stage since creation or the last reset,
+     * estimated from the messages timed (one in {@value #TIMING_SAMPLE}).
+     *
+     * @param stage the index of the stage
+     * @return the accumulated time in nanoseconds
+     */
+    public long getStageNanos(final int stage) {
+        return stageNanos.get(stage);
+    }
+
+    /**
+     * Returns how many messages a stage actually scored (memo hits of
+     * stateless stages are not counted) since creation or the last reset.
+     *
+     * @param stage the index of the stage
+     * @return the number of calls to the stage
+     */
+    public long getStageCalls(final int stage) {
+        return stageCalls.get(stage);
+    }
+
+    /**
+     * Resets the timing counters of all stages.
+     */
+    public void resetCounters() {
+        for (int i = 0; i < stages.size(); i++) {
+            stageNanos.set(i, 0);
+            stageCalls.set(i, 0);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package fr.univ_lyon1.info.m1.microblog.model;
+
+import java.util.Map;
+
+/**
+ * A scoring strategy that scores messages one at a time, so that several
+ * stages can be fused into a single pass by a {@link ScoringPipeline}. The
+ * score of a message is the sum of the contributions of the stages.
+ */
+public interface ScoringStage extends ScoreStrategy {
+
+    /**
+     * Computes the points this stage adds to the score of a message.
+     *
+     * @param user the user viewing the message, or null if unknown
+     * @param message the message to score
+     * @param data the data of the message for the user
+     * @return the contribution of this stage to the score of the message
+     */
+    int contribution(User user, Message message, MessageData data);
+
+    /**
+     * Tells whether the contribution only depends on the message itself (not
+     * on the user, its data or the current time), so that it can be computed
+     * once per message and reused.
+     *
+     * @return true if the contribution of a message never changes
+     */
+    default boolean isStateless() {
+        return false;
+    }
+
+    /**
+     * Adds the contribution of this stage to the current score of each message.
+     *
+     * @param messagesData a map containing messages and their associated data
+     */
+    @Override
+    default void computeScores(final Map<Message, MessageData> messagesData) {
+        for (Map.Entry<Message, MessageData> entry : messagesData.entrySet()) {
+            MessageData data = entry.getValue();
+            data.setScore(data.getScore() + contribution(null, entry.getKey(), data));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package fr.univ_lyon1.info.m1.microblog.model;
+
+/**
+ * Position in a timeline, just after the last message of a page: the sort
+ * position of that message (e.g. its key in {@link PackedKeySorter}, or its
+ * creation time) and its id, which breaks ties. Its string form is opaque to
+ * the callers of {@link TimelinePage}; only the strategy that built a cursor
+ * knows what its position means.
+ */
+final class TimelineCursor {
+
+    private final long position;
+    private final int id;
+
+    /**
+     * Creates a cursor.
+     *
+     * @param position the sort position of the last message of the page
+     * @param id the id of that message
+     */
+    TimelineCursor(final long position, final int id) {
+        this.position = position;
+        this.id = id;
+    }
+
+    /**
+     * Returns the sort position of the last message of the page.
+     *
+     * @return the position, as defined by the strategy
+     */
+    long getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns the id of the last message of the page.
+     *
+     * @return the message id
+     */
+    int getId() {
+        return id;
+    }
+
+    /**
+     * Returns the opaque form of this cursor.
+     *
+     * @return a string to give back to {@link #decode}
+     */
+    String encode() {
+        return Long.toUnsignedString(position, Character.MAX_RADIX)
+            + "." + Integer.toString(id, Character.MAX_RADIX);
+    }
+
+    /**
+     * Reads a cursor from its opaque form.
+     *
+     * @param cursor the string returned by {@link #encode}, or null
+     * @return the cursor, or null if {@code cursor} is null (first page)
+     * @throws IllegalArgumentException if the string is not a cursor
+     */
+    static TimelineCursor decode(final String cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        int dot = cursor.indexOf('.');
+        try {
+            return new TimelineCursor(
+                Long.parseUnsignedLong(cursor.substring(0, Math.max(dot, 0)),
+                    Character.MAX_RADIX),
+                Integer.parseInt(cursor.substring(dot + 1), Character.MAX_RADIX));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Curseur invalide : " + cursor, e);
+        }
+    }
+
+    /**
+     * Tells whether a message comes after this cursor, given its position.
+     * Positions are compared as unsigned numbers, then ids.
+     *
+     * @param messagePosition the sort position of the message
+     * @param messageId the id of the message
+     * @return true if the message belongs to a later page
+     */
+    boolean isBefore(final long messagePosition, final int messageId) {
+        int c = Long.compareUnsigned(position, messagePosition);
+        return c < 0 || c == 0 && id < messageId;
+    }
+}
@@ -0,0 +1,57 @@
+package fr.univ_lyon1.info.m1.microblog.model;
+
+import java.util.LinkedHashMap;
+
+/**
+ * A page of a timeline: some messages in display order and the cursor of
+ * the next page. The cursor is an opaque string, to give back to the same
+ * strategy (see {@link DisplayStrategy#filterAndSortPage}) to read the
+ * messages that follow. It points after the last message of the page rather
+ * than at an offset, so that messages added or removed before it do not shift
+ * the next page.
+ */
+public final class TimelinePage {
+
+    private final LinkedHashMap<Message, MessageData> messages;
+    private final String nextCursor;
+
+    /**
+     * Creates a page.
+     *
+     * @param messages the messages of the page and their data, in display order
+     * @param nextCursor the cursor of the next page, or null if this page is
+     *                   the last one
+     */
+    public TimelinePage(final LinkedHashMap<Message, MessageData> messages,
+            final String nextCursor) {
+        this.messages = messages;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Returns the messages of the page.
+     *
+     * @return the messages and their data, in display order
+     */
+    public LinkedHashMap<Message, MessageData> getMessages() {
+        return messages;
+    }
+
+    /**
+     * Returns the cursor of the next page.
+     *
+     * @return the opaque cursor, or null if there are no more messages
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * Tells whether there are messages after this page.
+     *
+     * @return true if {@link #getNextCursor()} is not null
+     */
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,234 @@
+package fr.univ_lyon1.info.m1.microblog.model;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of translations keyed by (hash of the text, source language, target
+ * language), shared by all users: a message translated once is never sent to
+ * the API again. It has two tiers:
+ * <ul>
+ * <li>an in-memory LRU tier, bounded by the total length of the cached
+ * translations;</li>
+ * <li>an optional on-disk tier, one file per translation, which survives
+ * restarts. Entries found on disk are promoted to memory.</li>
+ * </ul>
+ * Hits and misses are counted.
+ */
+public class TranslationCache {
+
+    /**
+     * Default capacity of the memory tier, in characters.
+     */
+    public static final long DEFAULT_MAX_CHARS = 1_000_000;
+
+    /**
+     * Memory tier, least recently used first.
+     */
+    private final LinkedHashMap<String, String> memory = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Maximum total length of the translations in memory.
+     */
+    private final long maxChars;
+
+    /**
+     * Total length of the translations in memory.
+     */
+    private long chars;
+
+    /**
+     * Directory of the disk tier, or null if there is none.
+     */
+    private final Path directory;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a memory-only cache with the default capacity.
+     */
+    public TranslationCache() {
+        this(DEFAULT_MAX_CHARS, null);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxChars the capacity of the memory tier, in characters
+     * @param directory the directory of the disk tier (created if needed),
+     *                  or null to keep translations in memory only
+     */
+    public TranslationCache(final long maxChars, final Path directory) {
+        this.maxChars = maxChars;
+        this.directory = directory;
+    }
+
+    /**
+     * Looks up a translation, in memory then on disk.
+     *
+     * @param text the original text
+     * @param sourceLang the source language code
+     * @param targetLang the target language code
+     * @return the cached translation, or null if there is none
+     */
+    public String get(final String text, final String sourceLang, final String targetLang) {
+        String key = key(text, sourceLang, targetLang);
+        synchronized (memory) {
+            String cached = memory.get(key);
+            if (cached != null) {
+                memoryHits.incrementAndGet();
+                return cached;
+            }
+        }
+        String stored = readFromDisk(key);
+        if (stored != null) {
+            diskHits.incrementAndGet();
+            putInMemory(key, stored);
+            return stored;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Stores a translation in memory and, if enabled, on disk.
+     *
+     * @param text the original text
+     * @param sourceLang the source language code
+     * @param targetLang the target language code
+     * @param translation the translated text
+     */
+    public void put(final String text, final String sourceLang, final String targetLang,
+            final String translation) {
+        String key = key(text, sourceLang, targetLang);
+        putInMemory(key, translation);
+        writeToDisk(key, translation);
+    }
+
+    private void putInMemory(final String key, final String translation) {
+        if (translation.length() > maxChars) {
+            return;
+        }
+        synchronized (memory) {
+            String previous = memory.put(key, translation);
+            if (previous != null) {
+                chars -= previous.length();
+            }
+            chars += translation.length();
+            // Evict the least recently used translations
+            Iterator<Map.Entry<String, String>> it = memory.entrySet().iterator();
+            while (chars > maxChars && it.hasNext()) {
+                chars -= it.next().getValue().length();
+                it.remove();
+            }
+        }
+    }
+
+    private String readFromDisk(final String key) {
+        if (directory == null) {
+            return null;
+        }
+        Path file = directory.resolve(key);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.err.println("Lecture du cache de traduction impossible : " + file);
+            return null;
+        }
+    }
+
+    private void writeToDisk(final String key, final String translation) {
+        if (directory == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            // Write then rename, so that a reader never sees a partial file
+            Path tmp = Files.createTempFile(directory, key, ".tmp");
+            Files.write(tmp, translation.getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, directory.resolve(key), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Écriture du cache de traduction impossible : " + e.getMessage());
+        }
+    }
+
+    // Builds the key of a translation: the SHA-256 of the text and the
+    // language pair. It is also the file name in the disk tier.
+    private static String key(final String text, final String sourceLang,
+            final String targetLang) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(hash.length * 2 + 16);
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16))
+                  .append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.append('-').append(sourceLang).append('-').append(targetLang).toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Returns the number of lookups answered from memory.
+     *
+     * @return the number of memory hits
+     */
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    /**
+     * Returns the number of lookups answered from disk.
+     *
+     * @return the number of disk hits
+     */
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    /**
+     * Returns the number of lookups answered from either tier.
+     *
+     * @return the number of hits
+     */
+    public long getHits() {
+        return memoryHits.get() + diskHits.get();
+    }
+
+    /**
+     * Returns the number of lookups that found nothing.
+     *
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of translations held in memory.
+     *
+     * @return the size of the memory tier
+     */
+    public int size() {
+        synchronized (memory) {
+            return memory.size();
+        }
+    }
+}
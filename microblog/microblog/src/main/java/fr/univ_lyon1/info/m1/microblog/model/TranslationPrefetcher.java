@@ -0,0 +1,295 @@
+package fr.univ_lyon1.info.m1.microblog.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Translates in the background the messages currently visible on screen, so
+ * that a click on "Traduire" is usually answered from the
+ * {@link TranslationCache} right away. Prefetching has a low priority:
+ * <ul>
+ * <li>at most {@code budget} prefetches run at the same time, and a new one
+ * starts only while the {@link TranslationService} has a free slot, so the
+ * translations requested by the user never wait behind them;</li>
+ * <li>at most {@code maxQueue} messages wait to be prefetched, the oldest
+ * ones being dropped;</li>
+ * <li>a message that is no longer visible is removed from the queue, and its
+ * running prefetch is cancelled.</li>
+ * </ul>
+ * Prefetched translations are only cached, never shown: the message is
+ * displayed translated once the user asks for it.
+ */
+public class TranslationPrefetcher {
+
+    /**
+     * Default number of prefetches running at the same time.
+     */
+    public static final int DEFAULT_BUDGET = 1;
+
+    /**
+     * Default number of messages waiting to be prefetched.
+     */
+    public static final int DEFAULT_MAX_QUEUE = 50;
+
+    /**
+     * Delay before trying again when the service is busy, in milliseconds.
+     */
+    private static final long RETRY_DELAY_MS = 250;
+
+    /**
+     * Number of prefetched translations remembered, not to fetch them again.
+     */
+    private static final int MAX_DONE = 1000;
+
+    private final TranslationRoutePlanner planner;
+    private final TranslationService service;
+    private final String sourceLang;
+    private final int budget;
+    private final int maxQueue;
+
+    /**
+     * Executor used to try again once the service is less busy.
+     */
+    private final Executor retryExecutor =
+        CompletableFuture.delayedExecutor(RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+
+    /**
+     * Visible translations, (text, target language), by scope (e.g. a pane).
+     */
+    private final Map<Object, Set<List<String>>> visible = new HashMap<>();
+
+    /**
+     * Translations waiting to be prefetched, oldest first.
+     */
+    private final Set<List<String>> queued = new LinkedHashSet<>();
+
+    /**
+     * Prefetches running.
+     */
+    private final Map<List<String>, CompletableFuture<String>> running = new HashMap<>();
+
+    /**
+     * Translations already prefetched, least recently added first.
+     */
+    private final Set<List<String>> done = Collections.newSetFromMap(
+        new LinkedHashMap<List<String>, Boolean>() {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<List<String>, Boolean> e) {
+                return size() > MAX_DONE;
+            }
+        });
+
+    private boolean retryScheduled;
+    private long prefetched;
+    private long cancelled;
+
+    /**
+     * Creates a prefetcher.
+     *
+     * @param planner the planner translating the messages
+     * @param service the service the planner sends its requests to, whose
+     *                load is checked before each prefetch
+     * @param sourceLang the language the messages are written in
+     * @param budget the maximum number of prefetches running at the same time
+     * @param maxQueue the maximum number of messages waiting to be prefetched
+     */
+    public TranslationPrefetcher(final TranslationRoutePlanner planner,
+            final TranslationService service, final String sourceLang,
+            final int budget, final int maxQueue) {
+        if (budget < 1 || maxQueue < 0) {
+            throw new IllegalArgumentException(
+                "Invalid prefetch limits: budget=" + budget + ", maxQueue=" + maxQueue);
+        }
+        this.planner = planner;
+        this.service = service;
+        this.sourceLang = sourceLang;
+        this.budget = budget;
+        this.maxQueue = maxQueue;
+    }
+
+    /**
+     * Records the messages visible in a scope, e.g. a user pane, replacing
+     * the ones previously recorded for it. Messages no longer visible in any
+     * scope are not prefetched anymore; messages already translated for the
+     * user are skipped.
+     *
+     * @param scope identifies where the messages are shown
+     * @param user the user reading them, whose language they are translated to
+     * @param messages the visible messages, in display order
+     */
+    public synchronized void setVisible(final Object scope, final User user,
+            final Collection<Message> messages) {
+        Set<List<String>> keys = new LinkedHashSet<>();
+        for (Message m : messages) {
+            if (m.getTranslatedContent(user) == null) {
+                keys.add(Arrays.asList(m.getContent(), user.getLanguage()));
+            }
+        }
+        if (keys.isEmpty()) {
+            visible.remove(scope);
+        } else {
+            visible.put(scope, keys);
+        }
+
+        // Forget what scrolled out of view
+        Set<List<String>> wanted = new HashSet<>();
+        for (Set<List<String>> s : visible.values()) {
+            wanted.addAll(s);
+        }
+        queued.retainAll(wanted);
+        List<CompletableFuture<String>> outOfView = new ArrayList<>();
+        Iterator<Map.Entry<List<String>, CompletableFuture<String>>> it =
+            running.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<List<String>, CompletableFuture<String>> e = it.next();
+            if (!wanted.contains(e.getKey())) {
+                outOfView.add(e.getValue());
+                it.remove();
+            }
+        }
+        // Cancelled once removed, since their completion may start other ones
+        cancel(outOfView);
+
+        for (List<String> key : keys) {
+            if (!done.contains(key) && !running.containsKey(key)) {
+                queued.add(key);
+            }
+        }
+        // Drop the oldest waiting messages beyond the limit
+        Iterator<List<String>> oldest = queued.iterator();
+        while (queued.size() > maxQueue) {
+            oldest.next();
+            oldest.remove();
+        }
+        pump();
+    }
+
+    /**
+     * Stops prefetching: the queue is emptied and running prefetches are
+     * cancelled.
+     */
+    public synchronized void cancelAll() {
+        visible.clear();
+        queued.clear();
+        List<CompletableFuture<String>> all = new ArrayList<>(running.values());
+        running.clear();
+        cancel(all);
+    }
+
+    // The cancellation reaches the service (see TranslationRoutePlanner#translate),
+    // which drops the requests no one else waits for and frees their slots
+    private void cancel(final List<CompletableFuture<String>> futures) {
+        for (CompletableFuture<String> f : futures) {
+            f.cancel(false);
+            cancelled++;
+        }
+    }
+
+    // Starts waiting prefetches within the budget, while the service is not
+    // busy with other requests
+    private synchronized void pump() {
+        while (running.size() < budget && !queued.isEmpty()) {
+            if (!service.hasFreeSlot()) {
+                scheduleRetry();
+                return;
+            }
+            Iterator<List<String>> it = queued.iterator();
+            List<String> key = it.next();
+            it.remove();
+            CompletableFuture<String> future = planner.translate(key.get(0), sourceLang,
+                key.get(1));
+            running.put(key, future);
+            future.whenComplete((translated, error) -> finished(key, future, error == null));
+        }
+    }
+
+    private synchronized void finished(final List<String> key,
+            final CompletableFuture<String> future, final boolean succeeded) {
+        if (running.remove(key, future) && succeeded) {
+            done.add(key);
+            prefetched++;
+        }
+        pump();
+    }
+
+    private void scheduleRetry() {
+        if (retryScheduled) {
+            return;
+        }
+        retryScheduled = true;
+        retryExecutor.execute(() -> {
+            synchronized (this) {
+                retryScheduled = false;
+                pump();
+            }
+        });
+    }
+
+    /**
+     * Returns the maximum number of prefetches running at the same time.
+     *
+     * @return the concurrency budget
+     */
+    public int getBudget() {
+        return budget;
+    }
+
+    /**
+     * Returns the maximum number of messages waiting to be prefetched.
+     *
+     * @return the capacity of the queue
+     */
+    public int getMaxQueue() {
+        return maxQueue;
+    }
+
+    /**
+     * Returns the number of translations prefetched so far.
+     *
+     * @return the number of successful prefetches
+     */
+    public synchronized long getPrefetchedCount() {
+        return prefetched;
+    }
+
+    /**
+     * Returns the number of prefetches cancelled because their message
+     * scrolled out of view.
+     *
+     * @return the number of cancelled prefetches
+     */
+    public synchronized long getCancelledCount() {
+        return cancelled;
+    }
+
+    /**
+     * Returns the number of messages waiting to be prefetched.
+     *
+     * @return the size of the queue
+     */
+    public synchronized int getQueueSize() {
+        return queued.size();
+    }
+
+    /**
+     * Returns the number of prefetches running.
+     *
+     * @return the number of running prefetches
+     */
+    public synchronized int getRunningCount() {
+        return running.size();
+    }
+}
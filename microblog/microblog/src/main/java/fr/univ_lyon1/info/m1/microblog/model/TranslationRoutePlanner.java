@@ -0,0 +1,160 @@
+package fr.univ_lyon1.info.m1.microblog.model;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Plans the translation of a text between any two languages with as few hops
+ * as possible. The language pairs of the API are fetched once (Apertium's
+ * {@code listPairs}) and kept; a direct pair is used when there is one,
+ * otherwise the shortest chain of pairs, found by a breadth-first search.
+ * Planned routes are cached. Every hop goes through the
+ * {@link TranslationService}, so intermediate translations are cached too and
+ * shared by routes starting the same way (e.g. eng-spa-fra and eng-spa-cat).
+ */
+public class TranslationRoutePlanner {
+
+    /**
+     * Service sending the translations.
+     */
+    private final TranslationService service;
+
+    /**
+     * Language pairs of the API, fetched on first use (null until then, or
+     * after a failed fetch, so that it is retried).
+     */
+    private final AtomicReference<CompletableFuture<Map<String, Set<String>>>> pairs =
+        new AtomicReference<>();
+
+    /**
+     * Planned routes, by (source, target).
+     */
+    private final Map<List<String>, List<String>> routes = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a planner sending its translations through a service.
+     *
+     * @param service the translation service
+     */
+    public TranslationRoutePlanner(final TranslationService service) {
+        this.service = service;
+    }
+
+    /**
+     * Translates a text through the shortest route between two languages.
+     *
+     * @param text the text to translate
+     * @param sourceLang the language of the text
+     * @param targetLang the language to translate to
+     * @return a future completed with the translation, or exceptionally if
+     *         no route exists or a hop failed; cancelling it drops the
+     *         requests not sent yet and cancels the running one
+     */
+    public CompletableFuture<String> translate(final String text, final String sourceLang,
+            final String targetLang) {
+        // Cancelling the translation cancels its requests
+        return TranslationService.composeCancellable(route(sourceLang, targetLang),
+            route -> service.translateVia(text, route));
+    }
+
+    /**
+     * Finds the shortest chain of language pairs from a language to another.
+     *
+     * @param sourceLang the source language
+     * @param targetLang the target language
+     * @return a future completed with the languages of the route, from source
+     *         to target, or exceptionally if there is none
+     */
+    public CompletableFuture<List<String>> route(final String sourceLang,
+            final String targetLang) {
+        if (sourceLang.equals(targetLang)) {
+            return CompletableFuture.completedFuture(Collections.singletonList(sourceLang));
+        }
+        List<String> key = Arrays.asList(sourceLang, targetLang);
+        List<String> known = routes.get(key);
+        if (known != null) {
+            return CompletableFuture.completedFuture(known);
+        }
+        return pairs().thenApply(graph -> {
+            List<String> route = shortestPath(graph, sourceLang, targetLang);
+            if (route == null) {
+                throw new CompletionException(new IOException(
+                    "Aucune traduction possible de " + sourceLang + " vers " + targetLang));
+            }
+            routes.put(key, route);
+            return route;
+        });
+    }
+
+    private CompletableFuture<Map<String, Set<String>>> pairs() {
+        while (true) {
+            CompletableFuture<Map<String, Set<String>>> current = pairs.get();
+            if (current != null) {
+                return current;
+            }
+            CompletableFuture<Map<String, Set<String>>> created = new CompletableFuture<>();
+            if (pairs.compareAndSet(null, created)) {
+                service.listPairs().whenComplete((result, error) -> {
+                    if (error != null) {
+                        // Forget the failure, so that the next call retries
+                        pairs.compareAndSet(created, null);
+                        created.completeExceptionally(error);
+                    } else {
+                        created.complete(result);
+                    }
+                });
+                return created;
+            }
+        }
+    }
+
+    // Breadth-first search; neighbours are visited in alphabetical order so
+    // that routes do not depend on the order of the pairs
+    private static List<String> shortestPath(final Map<String, Set<String>> graph,
+            final String sourceLang, final String targetLang) {
+        Map<String, String> previous = new HashMap<>();
+        Deque<String> queue = new ArrayDeque<>();
+        previous.put(sourceLang, null);
+        queue.add(sourceLang);
+        while (!queue.isEmpty()) {
+            String lang = queue.poll();
+            if (lang.equals(targetLang)) {
+                List<String> route = new ArrayList<>();
+                for (String l = lang; l != null; l = previous.get(l)) {
+                    route.add(l);
+                }
+                Collections.reverse(route);
+                return Collections.unmodifiableList(route);
+            }
+            for (String next : new TreeSet<>(graph.getOrDefault(lang, Collections.emptySet()))) {
+                if (!previous.containsKey(next)) {
+                    previous.put(next, lang);
+                    queue.add(next);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Forgets the language pairs and the planned routes, e.g. when the API
+     * gained new pairs. They are fetched again on next use.
+     */
+    public void reset() {
+        pairs.set(null);
+        routes.clear();
+    }
+}
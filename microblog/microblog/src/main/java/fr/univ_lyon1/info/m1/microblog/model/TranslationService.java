@@ -0,0 +1,532 @@
+package fr.univ_lyon1.info.m1.microblog.model;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Non-blocking client for the Apertium translation API (see
+ * {@link ApertiumApiClient}). Translations return a {@link CompletableFuture}
+ * and never block the calling thread. At most {@code maxInFlight} requests are
+ * sent at the same time, the others wait in a queue, and every request fails
+ * with a {@link java.util.concurrent.TimeoutException} if it takes longer than
+ * the timeout (waiting in the queue included). Translations go through a
+ * {@link TranslationCache}, so that a text is sent to the API only once; the
+ * cache is read on a background executor, since it may read a file.
+ * Concurrent requests for the same text share a single HTTP call. Once every
+ * caller sharing a request has cancelled its future, the request is dropped:
+ * it leaves the queue, or its HTTP call is aborted. A call keeps its slot
+ * until it has really ended, so that {@code maxInFlight} also bounds the
+ * aborted calls: a call aborted before the server answered ends when the
+ * answer arrives, or at the latest after the timeout. All requests use the
+ * pooled client of {@link ApertiumApiClient}.
+ */
+public class TranslationService {
+
+    /**
+     * Default maximum number of concurrent requests.
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+    /**
+     * Default timeout of a request.
+     */
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
+
+    /**
+     * Default executor of the cache lookups: one daemon thread, shared by
+     * the services, started on the first lookup.
+     */
+    private static final Executor LOOKUPS = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "translation-cache");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Maximum time of a single request.
+     */
+    private final Duration timeout;
+
+    /**
+     * Free slots for requests.
+     */
+    private final Semaphore permits;
+
+    /**
+     * Requests waiting for a slot.
+     */
+    private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Translations already received.
+     */
+    private final TranslationCache cache;
+
+    /**
+     * Executor reading the cache, off the calling thread.
+     */
+    private final Executor lookups;
+
+    /**
+     * Requests sent or waiting, by (text, source, target), so that duplicates
+     * share them. Guarded by this service, like the requests themselves.
+     */
+    private final Map<List<String>, Request> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a service with the default limits.
+     */
+    public TranslationService() {
+        this(DEFAULT_MAX_IN_FLIGHT, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Creates a service.
+     *
+     * @param maxInFlight the maximum number of requests sent at the same time
+     * @param timeout the maximum time of a request
+     */
+    public TranslationService(final int maxInFlight, final Duration timeout) {
+        this(maxInFlight, timeout, new TranslationCache());
+    }
+
+    /**
+     * Creates a service with its own cache, e.g. one with a disk tier.
+     *
+     * @param maxInFlight the maximum number of requests sent at the same time
+     * @param timeout the maximum time of a request
+     * @param cache the cache of translations
+     */
+    public TranslationService(final int maxInFlight, final Duration timeout,
+            final TranslationCache cache) {
+        this(maxInFlight, timeout, cache, LOOKUPS);
+    }
+
+    /**
+     * Creates a service reading its cache on the given executor, e.g.
+     * {@code Runnable::run} to read it on the calling thread in tests.
+     *
+     * @param maxInFlight the maximum number of requests sent at the same time
+     * @param timeout the maximum time of a request
+     * @param cache the cache of translations
+     * @param lookups the executor reading the cache
+     */
+    public TranslationService(final int maxInFlight, final Duration timeout,
+            final TranslationCache cache, final Executor lookups) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+        }
+        this.permits = new Semaphore(maxInFlight);
+        this.timeout = timeout;
+        this.cache = cache;
+        this.lookups = lookups;
+    }
+
+    /**
+     * Returns the cache of translations, e.g. to read its hit rate.
+     *
+     * @return the cache used by this service
+     */
+    public TranslationCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Tells whether a new request would be sent right away: a slot is free
+     * and no request is waiting for one. Background work, such as
+     * {@link TranslationPrefetcher}, only sends requests while this holds.
+     *
+     * @return true if the service is not saturated
+     */
+    public boolean hasFreeSlot() {
+        return waiting.isEmpty() && permits.availablePermits() > 0;
+    }
+
+    /**
+     * Translates a text from a language to another.
+     *
+     * @param text the text to translate
+     * @param sourceLang the source language code (e.g. "eng")
+     * @param targetLang the target language code (e.g. "fra")
+     * @return a future completed with the translated text, or exceptionally
+     *         if the request failed or timed out
+     */
+    public CompletableFuture<String> translate(final String text, final String sourceLang,
+            final String targetLang) {
+        List<String> key = Arrays.asList(text, sourceLang, targetLang);
+        Request request;
+        CompletableFuture<String> shared;
+        synchronized (this) {
+            Request pending = inFlight.get(key);
+            if (pending != null) {
+                return share(key, pending);
+            }
+            // Registered before the cache lookup, so that duplicates asked
+            // meanwhile share it instead of reading the cache again
+            request = new Request();
+            inFlight.put(key, request);
+            shared = share(key, request);
+        }
+        request.result.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        request.result.whenComplete((r, error) -> forget(key, request));
+        lookups.execute(() -> lookUp(key, request));
+        return shared;
+    }
+
+    // Completes a request from the cache, or queues it for the API
+    private void lookUp(final List<String> key, final Request request) {
+        if (request.result.isDone()) {
+            // Timed out or cancelled before the lookup
+            return;
+        }
+        String cached;
+        try {
+            cached = cache.get(key.get(0), key.get(1), key.get(2));
+        } catch (RuntimeException e) {
+            request.result.completeExceptionally(e);
+            return;
+        }
+        if (cached != null) {
+            forget(key, request);
+            request.result.complete(cached);
+            return;
+        }
+        synchronized (this) {
+            if (request.result.isDone()) {
+                return;
+            }
+            request.task = () -> send(key.get(0), key.get(1), key.get(2), request);
+            waiting.add(request.task);
+        }
+        drain();
+    }
+
+    // A new future for a caller of a request. Callers get a copy, so that one
+    // of them cannot complete it for all; the request is dropped once all of
+    // them have cancelled their copy.
+    private CompletableFuture<String> share(final List<String> key, final Request request) {
+        request.interested++;
+        CompletableFuture<String> copy = request.result.copy();
+        copy.whenComplete((r, error) -> {
+            if (copy.isCancelled()) {
+                abandon(key, request);
+            }
+        });
+        return copy;
+    }
+
+    // Drops a request no caller waits for anymore: skips its cache lookup,
+    // removes it from the queue, or aborts its HTTP call (see send)
+    private void abandon(final List<String> key, final Request request) {
+        synchronized (this) {
+            request.interested--;
+            if (request.interested > 0 || request.result.isDone()) {
+                return;
+            }
+            inFlight.remove(key, request);
+            if (request.task != null) {
+                waiting.remove(request.task);
+            }
+            request.result.cancel(false);
+        }
+    }
+
+    private synchronized void forget(final List<String> key, final Request request) {
+        inFlight.remove(key, request);
+    }
+
+    /**
+     * Translates many texts at once. The requests are pipelined over at most
+     * {@code maxInFlight} connections, and duplicate texts are sent only once.
+     * A text whose translation failed gets null, without failing the batch.
+     *
+     * @param texts the texts to translate
+     * @param sourceLang the source language code
+     * @param targetLang the target language code
+     * @return a future completed with the translations, in the order of texts
+     */
+    public CompletableFuture<List<String>> translateAll(final List<String> texts,
+            final String sourceLang, final String targetLang) {
+        List<CompletableFuture<String>> futures = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            futures.add(translate(text, sourceLang, targetLang)
+                .handle((translated, error) -> error == null ? translated : null));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+            .thenApply(done -> {
+                List<String> results = new ArrayList<>(futures.size());
+                for (CompletableFuture<String> f : futures) {
+                    results.add(f.join());
+                }
+                return results;
+            });
+    }
+
+    /**
+     * Translates a text through a chain of languages, e.g. eng, spa, fra when
+     * there is no direct pair between the first and last ones. Each hop starts
+     * when the previous one completes, without blocking.
+     *
+     * @param text the text to translate, in the first language of the route
+     * @param route the languages, from source to target
+     * @return a future completed with the text in the last language
+     */
+    public CompletableFuture<String> translateVia(final String text, final List<String> route) {
+        CompletableFuture<String> result = CompletableFuture.completedFuture(text);
+        for (int i = 0; i + 1 < route.size(); i++) {
+            final String source = route.get(i);
+            final String target = route.get(i + 1);
+            result = composeCancellable(result, t -> translate(t, source, target));
+        }
+        return result;
+    }
+
+    /**
+     * Like {@code first.thenCompose(next)}, except that cancelling the
+     * returned future also cancels {@code first} and the future returned by
+     * {@code next}, so that the requests behind them are dropped (see
+     * {@link #translate}).
+     *
+     * @param <T> the type of the first result
+     * @param <U> the type of the final result
+     * @param first the first step
+     * @param next starts the second step from the first result
+     * @return a future completed with the result of the second step
+     */
+    static <T, U> CompletableFuture<U> composeCancellable(final CompletableFuture<T> first,
+            final Function<? super T, CompletableFuture<U>> next) {
+        CompletableFuture<U> result = new CompletableFuture<>();
+        first.whenComplete((value, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error);
+                return;
+            }
+            if (result.isDone()) {
+                return;
+            }
+            CompletableFuture<U> second;
+            try {
+                second = next.apply(value);
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                return;
+            }
+            second.whenComplete((v, e) -> {
+                if (e != null) {
+                    result.completeExceptionally(e);
+                } else {
+                    result.complete(v);
+                }
+            });
+            result.whenComplete((v, e) -> {
+                if (result.isCancelled()) {
+                    second.cancel(false);
+                }
+            });
+        });
+        result.whenComplete((v, e) -> {
+            if (result.isCancelled()) {
+                first.cancel(false);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Fetches the language pairs the API can translate directly.
+     *
+     * @return a future completed with the target languages available from
+     *         each source language
+     */
+    public CompletableFuture<Map<String, Set<String>>> listPairs() {
+        HttpRequest request = ApertiumApiClient.newRequest(ApertiumApiClient.listPairsUri())
+                .timeout(timeout)
+                .build();
+        return ApertiumApiClient.sharedClient()
+            .sendAsync(request, HttpResponse.BodyHandlers.ofString())
+            .thenApply(response -> {
+                Map<String, Set<String>> pairs = ApertiumApiClient.parsePairs(response);
+                if (pairs == null) {
+                    throw new CompletionException(
+                        new IOException("Paires de langues indisponibles"));
+                }
+                return pairs;
+            });
+    }
+
+    private void send(final String text, final String sourceLang, final String targetLang,
+            final Request request) {
+        CompletableFuture<String> result = request.result;
+        synchronized (this) {
+            request.task = null;
+        }
+        if (result.isDone()) {
+            // Timed out or cancelled while waiting for a slot
+            release();
+            return;
+        }
+        HttpRequest httpRequest = ApertiumApiClient.requestBuilder(text, sourceLang, targetLang)
+                .timeout(timeout)
+                .build();
+        AbortableBody body = new AbortableBody();
+        CompletableFuture<HttpResponse<String>> response;
+        try {
+            response = ApertiumApiClient.sharedClient().sendAsync(httpRequest, body::reading);
+        } catch (RuntimeException e) {
+            release();
+            result.completeExceptionally(e);
+            return;
+        }
+        // The slot is released when the call has ended, not when its future
+        // is cancelled: cancelling it would not stop the exchange
+        response.whenComplete((r, error) -> {
+            release();
+            if (error != null) {
+                result.completeExceptionally(error);
+                return;
+            }
+            String translated = ApertiumApiClient.parseResponse(r);
+            // Forget the request before completing it, so that a caller asking
+            // again from a callback reads the cache instead of this request
+            forget(Arrays.asList(text, sourceLang, targetLang), request);
+            if (translated == null) {
+                result.completeExceptionally(new IOException(
+                    "Traduction " + sourceLang + " -> " + targetLang + " impossible"));
+            } else {
+                cache.put(text, sourceLang, targetLang, translated);
+                result.complete(translated);
+            }
+        });
+        // Cancelled or timed out while being sent
+        result.whenComplete((r, error) -> body.abort());
+    }
+
+    // Starts waiting requests while there are free slots
+    private void drain() {
+        while (!waiting.isEmpty() && permits.tryAcquire()) {
+            Runnable task = waiting.poll();
+            if (task == null) {
+                permits.release();
+                return;
+            }
+            task.run();
+        }
+    }
+
+    private void release() {
+        permits.release();
+        drain();
+    }
+
+    /**
+     * A request sent or waiting for a slot, shared by the callers asking for
+     * the same translation.
+     */
+    private static final class Request {
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private Runnable task; // While waiting for a slot
+        private int interested; // Callers whose copy is not cancelled
+    }
+
+    /**
+     * Body of a response that can be aborted, even before the response has
+     * arrived. An aborted body stops reading the response, which ends the
+     * exchange, and completes with an {@link IOException}; until then, the
+     * exchange goes on.
+     */
+    private static final class AbortableBody implements HttpResponse.BodySubscriber<String> {
+        private final CompletableFuture<String> body = new CompletableFuture<>();
+        private HttpResponse.BodySubscriber<String> delegate;
+        private Flow.Subscription subscription; // Guarded by this
+        private boolean aborted; // Guarded by this
+
+        // The body handler: reads the response as a string, until aborted
+        private HttpResponse.BodySubscriber<String> reading(
+                final HttpResponse.ResponseInfo info) {
+            delegate = HttpResponse.BodyHandlers.ofString().apply(info);
+            delegate.getBody().whenComplete((text, error) -> {
+                if (error != null) {
+                    body.completeExceptionally(error);
+                } else {
+                    body.complete(text);
+                }
+            });
+            return this;
+        }
+
+        // Aborts the exchange now if the response is being read, or as soon
+        // as it arrives otherwise
+        private void abort() {
+            Flow.Subscription s;
+            synchronized (this) {
+                if (aborted || body.isDone()) {
+                    return;
+                }
+                aborted = true;
+                s = subscription;
+            }
+            if (s != null) {
+                stop(s);
+            }
+        }
+
+        private void stop(final Flow.Subscription s) {
+            s.cancel();
+            body.completeExceptionally(new IOException("Traduction abandonnée"));
+        }
+
+        @Override
+        public CompletionStage<String> getBody() {
+            return body;
+        }
+
+        @Override
+        public void onSubscribe(final Flow.Subscription s) {
+            boolean abort;
+            synchronized (this) {
+                subscription = s;
+                abort = aborted;
+            }
+            if (abort) {
+                stop(s);
+            } else {
+                delegate.onSubscribe(s);
+            }
+        }
+
+        @Override
+        public void onNext(final List<ByteBuffer> item) {
+            delegate.onNext(item);
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            delegate.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            delegate.onComplete();
+        }
+    }
+}
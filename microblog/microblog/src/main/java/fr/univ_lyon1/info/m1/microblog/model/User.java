@@ -8,9 +8,14 @@ import java.util.Set;
  */
 public class User {
 
+    /** Language messages are translated to for this user, by default. */
+    public static final String DEFAULT_LANGUAGE = "fra";
+
     /** Unique identifier for the user. */
     private String id;
     private Set<User> subscriptions = new HashSet<>();
+    /** Language the user reads translations in (Apertium code, e.g. "fra"). */
+    private String language = DEFAULT_LANGUAGE;
     
 
     /**
@@ -59,6 +64,24 @@ public class User {
         this.id = id;
     }
 
+    /**
+     * Returns the language messages are translated to for this user.
+     *
+     * @return the Apertium code of the language, e.g. "fra"
+     */
+    public String getLanguage() {
+        return language;
+    }
+
+    /**
+     * Sets the language messages are translated to for this user.
+     *
+     * @param language the Apertium code of the language, e.g. "spa"
+     */
+    public void setLanguage(final String language) {
+        this.language = language;
+    }
+
     /**
      * Unsubscribes from another user.
      *
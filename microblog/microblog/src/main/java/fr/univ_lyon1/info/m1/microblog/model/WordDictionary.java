@@ -0,0 +1,88 @@
+package fr.univ_lyon1.info.m1.microblog.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Global dictionary interning the words of messages as int ids, so that each
+ * message can hold its words as a compact sorted {@code int[]} shared by all
+ * users and scorers.
+ */
+public final class WordDictionary {
+
+    /**
+     * Id of each known word.
+     */
+    private static final Map<String, Integer> IDS = new HashMap<>();
+
+    /**
+     * Known words, indexed by id.
+     */
+    private static final List<String> WORDS = new ArrayList<>();
+
+    // Constructeur privé pour empêcher l'instanciation
+    private WordDictionary() {
+    }
+
+    /**
+     * Returns the id of a word, assigning a new one if the word is unknown.
+     *
+     * @param word the word to intern
+     * @return the id of the word
+     */
+    public static synchronized int intern(final String word) {
+        Integer id = IDS.get(word);
+        if (id == null) {
+            id = WORDS.size();
+            IDS.put(word, id);
+            WORDS.add(word);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the word with the given id.
+     *
+     * @param id an id returned by {@link #intern(String)}
+     * @return the corresponding word
+     */
+    public static synchronized String word(final int id) {
+        return WORDS.get(id);
+    }
+
+    /**
+     * Returns the number of distinct words interned so far. Word ids are
+     * always lower than this value.
+     *
+     * @return the size of the dictionary
+     */
+    public static synchronized int size() {
+        return WORDS.size();
+    }
+
+    /**
+     * Splits a text into lowercase words and interns them.
+     *
+     * @param text the text to tokenize
+     * @return the sorted, distinct ids of the words of the text
+     */
+    public static int[] tokenize(final String text) {
+        String[] words = text.toLowerCase().split("[^\\p{Alpha}]+");
+        int[] ids = new int[words.length];
+        for (int i = 0; i < words.length; i++) {
+            ids[i] = intern(words[i]);
+        }
+        Arrays.sort(ids);
+        // Remove duplicates in place
+        int n = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (n == 0 || ids[n - 1] != ids[i]) {
+                ids[n++] = ids[i];
+            }
+        }
+        return n == ids.length ? ids : Arrays.copyOf(ids, n);
+    }
+}
@@ -1,8 +1,12 @@
 package fr.univ_lyon1.info.m1.microblog.model;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Represents the core model of the microblogging application. It manages users
@@ -16,32 +20,74 @@ public class Y implements IModel {
     private final List<User> users = new ArrayList<>();
 
     /**
-     * List of messages in the application.
+     * Messages of the application, indexed by id.
      */
-    private final List<Message> messages = new ArrayList<>();
+    private final MessageStore messages = new MessageStore();
+
+    /**
+     * Word to messages index, kept up to date on add and delete.
+     */
+    private final InvertedIndex index = new InvertedIndex();
+
+    /**
+     * Bookmark scores of the messages, kept up to date on every change.
+     */
+    private final IncrementalBookmarkScoring bookmarkScoring =
+        new IncrementalBookmarkScoring(index);
 
     /**
      * List of registered listeners (observers) of the model.
      */
     private final List<IModelListener> listeners = new ArrayList<>();
 
+    /**
+     * Nesting depth of {@link #beginUpdate()} calls.
+     */
+    private int updateDepth;
+
+    /**
+     * Whether a notification was requested during the current update.
+     */
+    private boolean notificationPending;
+
+    /**
+     * Changes made since the last notification.
+     */
+    private List<ModelChange> pendingChanges = new ArrayList<>();
+
+    /**
+     * Number of users created.
+     */
+    private long usersVersion;
+
+    /**
+     * Version of the per-user state (bookmarks, translations) of each user.
+     */
+    private final Map<User, Long> userVersions = new HashMap<>();
+
     @Override
     public User createUser(final String id) {
         User user = new User(id);
         users.add(user);
+        usersVersion++;
+        pendingChanges.add(ModelChange.userAdded(user));
         notifyListeners(); // Notify listeners after creating a new user
         return user;
     }
 
     @Override
     public void addMessage(final Message message) {
-        messages.add(message);
+        if (messages.add(message)) {
+            index.add(message);
+            bookmarkScoring.messageAdded(message, users);
+            pendingChanges.add(ModelChange.messageAdded(message));
+        }
         notifyListeners(); // Notify listeners after adding a new message
     }
 
     @Override
     public List<Message> getMessages() {
-        return messages;
+        return messages.asList();
     }
 
     @Override
@@ -75,36 +121,169 @@ public class Y implements IModel {
         listeners.add(listener);
     }
 
+    /**
+     * Notifies the listeners. {@link IModelDeltaListener}s get the changes
+     * recorded since the previous notification, or the whole model if none
+     * was recorded; other listeners always get the whole model.
+     */
     @Override
     public void notifyListeners() {
+        if (updateDepth > 0) {
+            // Coalesced into a single notification at the end of the update
+            notificationPending = true;
+            return;
+        }
+        List<ModelChange> changes = pendingChanges;
+        pendingChanges = new ArrayList<>();
         for (IModelListener listener : listeners) {
-            listener.onModelUpdated(getUsers(), getMessages());
+            if (listener instanceof IModelDeltaListener && !changes.isEmpty()) {
+                ((IModelDeltaListener) listener).onModelChanged(
+                    Collections.unmodifiableList(changes));
+            } else {
+                listener.onModelUpdated(getUsers(), getMessages());
+            }
         }
     }
 
     @Override
     public void deleteMessage(final Message message) {
-        messages.remove(message); // Suppression du message de la liste
+        if (messages.remove(message)) { // Suppression du message de la liste
+            bookmarkScoring.messageRemoved(message);
+            index.remove(message);
+            pendingChanges.add(ModelChange.messageRemoved(message));
+        }
         notifyListeners(); // Notifie les vues des changements
     }
 
     /**
-     * Fetches additional messages for a user.
+     * Starts a group of changes: notifications requested until the matching
+     * {@link #endUpdate()} are coalesced into a single one. Calls may be nested.
+     */
+    public void beginUpdate() {
+        updateDepth++;
+    }
+
+    /**
+     * Ends a group of changes started by {@link #beginUpdate()}. When the
+     * outermost group ends, listeners are notified once if any notification
+     * was requested in between.
+     */
+    public void endUpdate() {
+        if (updateDepth == 0 || --updateDepth > 0 || !notificationPending) {
+            return;
+        }
+        notificationPending = false;
+        notifyListeners();
+    }
+
+    /**
+     * Looks up a message by id.
      *
-     * @param user the user requesting more messages
-     * @param batchSize the number of messages to fetch
-     * @return a list of additional messages
+     * @param id the id of the message
+     * @return the message, or null if no message has this id
      */
-    public List<Message> fetchAdditionalMessages(final User user, final int batchSize) {
-        List<Message> newMessages = new ArrayList<>();
+    public Message getMessage(final int id) {
+        return messages.get(id);
+    }
 
-        for (int i = 0; i < batchSize; i++) {
-            Message newMessage = new Message("Additional message " + (messages.size() + 1), user);
-            newMessages.add(newMessage);
-            messages.add(newMessage); // Add to the internal list
+    /**
+     * Returns the messages sorted by creation date, newest first (ties broken
+     * by increasing id), without sorting them (they are kept in a time index).
+     *
+     * @return a read-only view of the messages in reverse chronological order
+     */
+    public Collection<Message> getMessagesNewestFirst() {
+        return messages.newestFirst();
+    }
+
+    /**
+     * Returns the messages after a position of the time index, newest first,
+     * without visiting the newer ones.
+     *
+     * @param time the creation time of the position
+     * @param id the message id of the position, breaking ties
+     * @return a read-only view of the messages strictly after (time, id)
+     */
+    public Collection<Message> getMessagesNewestFirstAfter(final long time, final int id) {
+        return messages.newestFirstAfter(time, id);
+    }
+
+    /**
+     * Returns the index from word ids to the messages containing them.
+     *
+     * @return the inverted index of the messages of the model
+     */
+    public InvertedIndex getInvertedIndex() {
+        return index;
+    }
+
+    /**
+     * Toggles the bookmark of a message for a user and updates the bookmark
+     * scores accordingly.
+     *
+     * @param message the message to bookmark or un-bookmark
+     * @param user the user toggling the bookmark
+     */
+    public void toggleBookmark(final Message message, final User user) {
+        message.toggleBookmark(user);
+        userChanged(user);
+        if (messages.contains(message)) {
+            bookmarkScoring.bookmarkToggled(message, user,
+                message.peekMessageData(user).isBookmarked());
         }
-        notifyListeners(); // Ensure views are notified
-        return newMessages;
+        pendingChanges.add(ModelChange.dataChanged(message, user));
     }
 
+    /**
+     * Records that the data of a message changed for a user outside of the
+     * model, e.g. its translation, so that the next notification carries it.
+     *
+     * @param message the message whose data changed
+     * @param user the user the data belongs to
+     */
+    public void markDataChanged(final Message message, final User user) {
+        userChanged(user);
+        pendingChanges.add(ModelChange.dataChanged(message, user));
+    }
+
+    /**
+     * Returns the version of the shared state of the model: it grows each
+     * time a user is created or a message is added, removed or re-dated.
+     * Anything computed from the users and messages is still valid while the
+     * version is the same.
+     *
+     * @return a monotonic version number
+     */
+    public long getVersion() {
+        return usersVersion + messages.getVersion();
+    }
+
+    /**
+     * Returns the version of the state of a user: it grows each time the user
+     * toggles a bookmark or the data of a message changes for the user (see
+     * {@link #markDataChanged}). A timeline computed for the user is still
+     * valid while both this version and {@link #getVersion()} are the same.
+     *
+     * @param user the user
+     * @return a monotonic version number, 0 if the user's state never changed
+     */
+    public long getUserVersion(final User user) {
+        return userVersions.getOrDefault(user, 0L);
+    }
+
+    private void userChanged(final User user) {
+        userVersions.merge(user, 1L, Long::sum);
+    }
+
+    /**
+     * Returns the bookmark score of a message for a user, i.e. the number of
+     * its words that appear in the messages bookmarked by the user.
+     *
+     * @param user the user viewing the message
+     * @param message the message to score
+     * @return the bookmark score
+     */
+    public int getBookmarkScore(final User user, final Message message) {
+        return bookmarkScoring.getScore(user, message);
+    }
 }
@@ -26,12 +26,25 @@ public interface IView {
      * Updates the view to display the messages and their corresponding data
      * for a specific user. The messages are provided as a map, where the keys
      * are the messages and the values are their associated data.
+     * The same map may be given to several views, so it and its (read-only)
+     * data must not be modified.
      *
      * @param user the user whose messages are being updated in the view
      * @param messagesData a map of messages and their associated data
      */
     void updateMessages(User user, LinkedHashMap<Message, MessageData> messagesData);
 
+    /**
+     * Appends messages at the end of the timeline of a user, e.g. the next
+     * page loaded while scrolling, keeping the messages already displayed as
+     * they are. Messages already displayed are skipped.
+     *
+     * @param user the user whose timeline grows
+     * @param messagesData the new messages and their (read-only) data, in
+     *                     display order
+     */
+    void appendMessages(User user, LinkedHashMap<Message, MessageData> messagesData);
+
     /**
      * Creates the user panes for the list of users in the view.
      * Each pane represents a user and displays their related information and messages.
@@ -39,4 +52,23 @@ public interface IView {
      * @param userList the list of users for whom panes are created
      */
     void createUsersPanes(List<User> userList);
+
+    /**
+     * Adds the pane of a user after the existing ones, e.g. for a user created
+     * once the application is started, keeping the other panes as they are.
+     * Does nothing if the user already has a pane.
+     *
+     * @param user the user whose pane is added
+     */
+    void addUserPane(User user);
+
+    /**
+     * Re-renders the widget of a single message for a user, e.g. after its
+     * translation arrived, keeping the rest of the user's pane as is. Does
+     * nothing if the message is not displayed for this user.
+     *
+     * @param user the user viewing the message
+     * @param message the message whose widget must be refreshed
+     */
+    void updateMessage(User user, Message message);
 }
@@ -1,39 +1,45 @@
 package fr.univ_lyon1.info.m1.microblog.view;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map.Entry;
+import java.util.Map;
 
 import fr.univ_lyon1.info.m1.microblog.model.ChronologicalStrategy;
 import fr.univ_lyon1.info.m1.microblog.model.DisplayStrategy;
-import fr.univ_lyon1.info.m1.microblog.model.IModel;
-import fr.univ_lyon1.info.m1.microblog.model.IModelListener;
 import fr.univ_lyon1.info.m1.microblog.model.Message;
 import fr.univ_lyon1.info.m1.microblog.model.MessageData;
 import fr.univ_lyon1.info.m1.microblog.model.MostRelevantStrategy;
 import fr.univ_lyon1.info.m1.microblog.model.RecentRelevantStrategy;
 import fr.univ_lyon1.info.m1.microblog.model.User;
-import javafx.scene.Node;
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.ComboBox;
+import javafx.scene.control.IndexedCell;
 import javafx.scene.control.Label;
-import javafx.scene.control.ScrollPane;
+import javafx.scene.control.ListView;
 import javafx.scene.control.TextArea;
+import javafx.scene.control.skin.VirtualFlow;
 import javafx.scene.input.KeyCode;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Pane;
+import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
-import javafx.scene.paint.Color;
 import javafx.stage.Stage;
 
 /**
- * Main class of the View (GUI) of the application. Implements
- * {@link IModelListener} to be notified when the model changes.
+ * Main class of the View (GUI) of the application. The view does not listen
+ * to the model: the controller renders the timelines affected by each change
+ * with the current display strategy, and the view reconciles its rows with
+ * them (see {@link #updateMessages}).
  */
-public class JfxView implements IView, IModelListener {
+public class JfxView implements IView {
 
     private HBox users = new HBox();
+    private final Map<User, UserPane> panes = new HashMap<>(); // Pane of each user
     private ViewListener listener;
     private ComboBox<DisplayStrategy> strategyComboBox;
 
@@ -99,6 +105,17 @@ public class JfxView implements IView, IModelListener {
          * @param user the user requesting the translation
          */
         void onTranslateRequested(Message message, User user);
+
+        /**
+         * Triggered when the messages visible in a user pane change, after a
+         * render or a scroll, e.g. to prefetch their translations.
+         *
+         * @param view the view showing the pane
+         * @param user the user of the pane
+         * @param visible the messages visible in the pane, from top to bottom
+         */
+        default void onVisibleMessagesChanged(IView view, User user, List<Message> visible) {
+        }
     }
 
     /**
@@ -138,6 +155,7 @@ public class JfxView implements IView, IModelListener {
         });
 
         users = new HBox(10);
+        panes.clear();
         root.getChildren().addAll(strategyComboBox, users); // Add ComboBox to root layout
 
         // Set the scene and display it
@@ -147,7 +165,40 @@ public class JfxView implements IView, IModelListener {
     }
 
     /**
-     * Creates user panes for the list of users.
+     * Pane of a user: a virtualized list of the messages of the timeline,
+     * with the data they were last rendered with.
+     */
+    private static final class UserPane {
+        private final User user;
+        private final ListView<Message> list = new ListView<>();
+        private Map<Message, MessageData> data = Collections.emptyMap();
+        private boolean ownsData; // Whether data may be modified in place
+        private final List<Message> reported = new ArrayList<>();
+        private boolean reportScheduled;
+
+        private UserPane(final User user) {
+            this.user = user;
+        }
+
+        private MessageData dataOf(final Message message) {
+            MessageData d = data.get(message);
+            return d != null ? d : message.peekMessageData(user);
+        }
+
+        // The rendered data, copied first if it is shared with other views
+        private Map<Message, MessageData> ownData() {
+            if (!ownsData) {
+                data = new HashMap<>(data);
+                ownsData = true;
+            }
+            return data;
+        }
+    }
+
+    /**
+     * Creates user panes for the list of users. Each pane shows the messages
+     * in a {@link ListView}: only the visible rows have nodes, which are
+     * recycled while scrolling.
      *
      * @param userList the list of users
      */
@@ -156,24 +207,102 @@ public class JfxView implements IView, IModelListener {
             users = new HBox();
         }
         users.getChildren().clear(); // Clear previous user panes
+        panes.clear();
         for (User u : userList) {
-            ScrollPane pane = new ScrollPane();
-            VBox userBox = new VBox();
-            pane.setMinWidth(500);
-            pane.setContent(userBox);
-            users.getChildren().add(pane);
-
-            VBox userMsgBox = new VBox();
-            Label userID = new Label(u.getId());
-            Pane textBox = createInputWidget(u);
-            userBox.getChildren().addAll(userID, userMsgBox, textBox);
-
-            enableContinuousScrolling(pane, u); // Pass the ScrollPane and user
+            createUserPane(u);
+        }
+    }
+
+    /**
+     * Adds the pane of a user after the existing ones, unless it has one.
+     *
+     * @param user the user whose pane is added
+     */
+    @Override
+    public void addUserPane(final User user) {
+        if (!panes.containsKey(user)) {
+            createUserPane(user);
+        }
+    }
+
+    // Creates the pane of a user, after the existing ones
+    private UserPane createUserPane(final User u) {
+        UserPane pane = new UserPane(u);
+        VBox userBox = new VBox();
+        userBox.setMinWidth(500);
+        users.getChildren().add(userBox);
+        panes.put(u, pane);
+
+        pane.list.setCellFactory(list -> new MessageCell(u, pane::dataOf,
+            () -> listener, () -> scheduleVisibleReport(pane)));
+        VBox.setVgrow(pane.list, Priority.ALWAYS);
+        Label userID = new Label(u.getId());
+        Pane textBox = createInputWidget(u);
+        userBox.getChildren().addAll(userID, pane.list, textBox);
+
+        enableContinuousScrolling(pane.list, u); // Pass the list and user
+        pane.list.heightProperty().addListener((obs, oldValue, newValue) ->
+            scheduleVisibleReport(pane));
+        return pane;
+    }
+
+    // Reports the visible messages once the current pulse is over, however
+    // many cells were updated in between
+    private void scheduleVisibleReport(final UserPane pane) {
+        if (pane.reportScheduled) {
+            return;
+        }
+        pane.reportScheduled = true;
+        Platform.runLater(() -> {
+            pane.reportScheduled = false;
+            List<Message> visible = visibleMessages(pane.list);
+            if (listener != null && !visible.equals(pane.reported)) {
+                pane.reported.clear();
+                pane.reported.addAll(visible);
+                listener.onVisibleMessagesChanged(this, pane.user, visible);
+            }
+        });
+    }
+
+    // Messages of the rows the list currently shows, even partially
+    private static List<Message> visibleMessages(final ListView<Message> list) {
+        VirtualFlow<?> flow = (VirtualFlow<?>) list.lookup(".virtual-flow");
+        if (flow == null) {
+            return Collections.emptyList();
+        }
+        IndexedCell<?> first = flow.getFirstVisibleCell();
+        IndexedCell<?> last = flow.getLastVisibleCell();
+        List<Message> items = list.getItems();
+        if (first == null || last == null || first.getIndex() < 0
+                || last.getIndex() >= items.size() || first.getIndex() > last.getIndex()) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(items.subList(first.getIndex(), last.getIndex() + 1));
+    }
+
+    // Pane showing the timeline of a user, or null if there is none
+    private UserPane findPane(final User user) {
+        return panes.get(user);
+    }
+
+    /**
+     * Removes the pane of a user, e.g. when the user leaves.
+     *
+     * @param user the user whose pane is removed
+     */
+    public void removeUserPane(final User user) {
+        UserPane pane = panes.remove(user);
+        if (pane != null) {
+            users.getChildren().remove(pane.list.getParent());
         }
     }
 
     /**
-     * Updates the messages for a specific user.
+     * Updates the messages for a specific user. The new order is reconciled
+     * with the displayed one by message id (see {@link KeyedListDiff}): only
+     * the rows of inserted, moved or changed messages are re-bound, e.g. a
+     * bookmark toggle only re-binds the row of that message. The other rows
+     * keep the data they were rendered with.
      *
      * @param user the user for whom messages are being updated
      * @param messagesData the messages and their corresponding data
@@ -181,29 +310,77 @@ public class JfxView implements IView, IModelListener {
     @Override
     public void updateMessages(final User user,
             final LinkedHashMap<Message, MessageData> messagesData) {
-        for (Node u : users.getChildren()) {
-            VBox userBox = (VBox) ((ScrollPane) u).getContent();
-            Label userID = (Label) userBox.getChildren().get(0);
-            if (userID.getText().equals(user.getId())) {
-                VBox userMsg = (VBox) userBox.getChildren().get(1);
-
-                userMsg.getChildren().clear();
-                for (Entry<Message, MessageData> e : messagesData.entrySet()) {
-                    Message m = e.getKey();
-                    MessageData d = e.getValue();
-                    userMsg.getChildren().add(createMessageWidget(m, d, user));
-                }
-                break;
+        UserPane pane = findPane(user);
+        if (pane == null) {
+            return;
+        }
+        Map<Message, MessageData> previous = pane.data;
+        // Rows rendered the same keep the data they were bound with, so that
+        // their cells see no change and are left alone
+        Map<Message, MessageData> kept = new HashMap<>(messagesData.size() * 4 / 3 + 1);
+        for (Map.Entry<Message, MessageData> e : messagesData.entrySet()) {
+            MessageData shown = previous.get(e.getKey());
+            kept.put(e.getKey(), MessageWidget.sameRendering(shown, e.getValue())
+                ? shown : e.getValue());
+        }
+        pane.data = kept;
+        pane.ownsData = true;
+        KeyedListDiff.reconcile(pane.list.getItems(), new ArrayList<>(messagesData.keySet()),
+            Message::getId, (shown, m) -> kept.get(m) != previous.get(shown));
+    }
+
+    /**
+     * Appends messages at the end of the timeline of a user, e.g. the next
+     * page loaded while scrolling. Only the rows of the new messages are
+     * built, and only once they are scrolled into view.
+     *
+     * @param user the user whose timeline grows
+     * @param messagesData the new messages and their data, in display order
+     */
+    @Override
+    public void appendMessages(final User user,
+            final LinkedHashMap<Message, MessageData> messagesData) {
+        UserPane pane = findPane(user);
+        if (pane == null) {
+            return;
+        }
+        List<Message> added = new ArrayList<>(messagesData.size());
+        for (Map.Entry<Message, MessageData> e : messagesData.entrySet()) {
+            if (!pane.data.containsKey(e.getKey())) {
+                pane.ownData().put(e.getKey(), e.getValue());
+                added.add(e.getKey());
             }
         }
+        pane.list.getItems().addAll(added);
     }
 
-    private static final String MSG_STYLE = "-fx-background-color: white; "
-            + "-fx-border-color: black; -fx-border-width: 1;"
-            + "-fx-border-radius: 10px;"
-            + "-fx-background-radius: 10px;"
-            + "-fx-padding: 8px; "
-            + "-fx-margin: 5px; ";
+    /**
+     * Re-renders the row of a single message, e.g. once it is translated: its
+     * user state is read again, keeping the score it was last rendered with.
+     * Nothing is built if the row is not visible.
+     *
+     * @param user the user viewing the message
+     * @param message the message whose row must be refreshed
+     */
+    @Override
+    public void updateMessage(final User user, final Message message) {
+        UserPane pane = findPane(user);
+        if (pane == null) {
+            return;
+        }
+        MessageData shown = pane.data.get(message);
+        if (shown != null) {
+            // New data, so that the cell sees the row changed
+            MessageData fresh = message.peekMessageData(user).snapshot();
+            fresh.setScore(shown.getScore());
+            pane.ownData().put(message, fresh.freeze());
+        }
+        List<Message> items = pane.list.getItems();
+        int index = items.indexOf(message);
+        if (index >= 0) {
+            items.set(index, message); // The cell re-binds its widget
+        }
+    }
 
     /**
      * Creates a widget for displaying a message.
@@ -217,89 +394,9 @@ public class JfxView implements IView, IModelListener {
             final Message message,
             final MessageData messageData,
             final User user) {
-        VBox msgBox = new VBox();
-        msgBox.setStyle(MSG_STYLE);
-        User author = message.getAuthor();
-        if (author == null) {
-            throw new IllegalStateException("Message author cannot be null");
-        }
-        // Bouton pour supprimer le message
-        Button deleteButton = new Button("x");
-        deleteButton.setOnAction(e -> {
-            if (listener != null) {
-                listener.onMessageDeleted(message, user);
-            }
-        });
-
-        // Bouton pour bookmark
-        String bookmarkText = messageData.isBookmarked() ? "⭐" : "Click to bookmark";
-        Button bookButton = new Button(bookmarkText);
-        bookButton.setOnAction(e -> {
-            if (listener != null) {
-                listener.onBookmarkToggled(message, user);
-            }
-        });
-
-        // Bouton pour traduction
-        Button translateButton = new Button("Traduire");
-        translateButton.setOnAction(e -> {
-            if (listener != null) {
-                listener.onTranslateRequested(message, user);
-            }
-        });
-
-        HBox buttonsBox = new HBox(deleteButton, bookButton, translateButton);
-        msgBox.getChildren().add(buttonsBox);
-
-        // Affichage du contenu du message
-        msgBox.getChildren().add(new Label(message.getContent()));
-
-        // Affichage de la traduction si disponible
-        String translatedContent = message.getTranslatedContent(user);
-        if (translatedContent != null && !translatedContent.isEmpty()) {
-            Label translationLabel = new Label("Traduction: " + translatedContent);
-            msgBox.getChildren().add(translationLabel);
-        }
-
-        // Affichage de la date
-        Label dateLabel = new Label("Published on: " + message.getFormattedDate());
-        dateLabel.setTextFill(Color.LIGHTGRAY);
-        msgBox.getChildren().add(dateLabel);
-
-        // Affichage du score
-        Label score = new Label("Score: " + messageData.getScore());
-        score.setTextFill(Color.DARKORANGE);
-        msgBox.getChildren().add(score);
-
-        // Affiche l'auteur du message
-        Label authorLabel;
-
-        if (message.getAuthor().equals(user)) {
-            // Si l'utilisateur est l'auteur du message, affiche "Me" et retire le
-            // soulignement
-            authorLabel = new Label("Me");
-            authorLabel.setStyle("-fx-text-fill: black;"); // Pas de soulignement ni de clic
-        } else {
-            // Sinon, affiche le nom de l'auteur et permet de s'abonner ou se désabonner
-            authorLabel = new Label("Author: " + message.getAuthor().getId());
-            authorLabel.setStyle("-fx-underline: true; -fx-text-fill: blue;");
-
-            // Gestion de l'abonnement/désabonnement
-            authorLabel.setOnMouseClicked(e -> {
-                if (user.getSubscriptions().contains(message.getAuthor())) {
-                    // Si déjà abonné, se désabonner
-                    user.unsubscribe(message.getAuthor());
-                    System.out.println("Unsubscribed from " + message.getAuthor().getId());
-                } else {
-                    // Sinon, s'abonner
-                    user.subscribe(message.getAuthor());
-                    System.out.println("Subscribed to " + message.getAuthor().getId());
-                }
-            });
-        }
-        msgBox.getChildren().add(authorLabel);
-
-        return msgBox;
+        MessageWidget widget = new MessageWidget(() -> listener);
+        widget.bind(message, messageData, user);
+        return widget;
     }
 
     /**
@@ -349,50 +446,28 @@ public class JfxView implements IView, IModelListener {
     }
 
     /**
-     * Notifies the view that the model has been updated.
+     * Enables continuous scrolling for the given list. When the list is
+     * scrolled to the bottom, it notifies the listener to load the next page
+     * of messages for the specified user, which is appended to the list (see
+     * {@link #appendMessages}) without rendering the rows already shown.
      *
-     * @param users the list of users in the model
-     * @param messages the list of messages in the model
-     */
-    @Override
-    public void onModelUpdated(final List<User> users, final List<Message> messages) {
-        // When the model is updated, refresh the user panes and display messages
-        // accordingly
-        createUsersPanes(users);
-
-        for (User user : users) {
-            LinkedHashMap<Message, MessageData> messagesData = new LinkedHashMap<>();
-            for (Message m : messages) {
-                messagesData.put(m, m.getMessageData(user));
-            }
-            updateMessages(user, messagesData);
-        }
-    }
-
-    /**
-     * Initializes the view and registers it to the model.
-     *
-     * @param model the model instance
-     */
-    public void initializeModel(final IModel model) {
-        model.registerListener(this); // Register this view with the model
-    }
-
-    /**
-     * Enables continuous scrolling for the given ScrollPane. When the
-     * ScrollPane is scrolled to the bottom, it notifies the listener to load
-     * more messages for the specified user.
-     *
-     * @param scrollPane the ScrollPane to enable continuous scrolling on
+     * @param list the list of messages to enable continuous scrolling on
      * @param user the user for whom more messages should be loaded
      */
-    public void enableContinuousScrolling(final ScrollPane scrollPane, final User user) {
-        scrollPane.vvalueProperty().addListener((observable, oldValue, newValue) -> {
-            if (newValue.doubleValue() == 1.0) { // When scrolled to the bottom
-                if (listener != null) {
-                    listener.onLoadMoreMessages(user); // Notify controller to load more messages
-                }
+    public void enableContinuousScrolling(final ListView<Message> list, final User user) {
+        // The scroll position belongs to the flow, created with the skin
+        list.skinProperty().addListener((obs, oldSkin, skin) -> {
+            VirtualFlow<?> flow = (VirtualFlow<?>) list.lookup(".virtual-flow");
+            if (flow == null) {
+                return;
             }
+            flow.positionProperty().addListener((observable, oldValue, newValue) -> {
+                if (newValue.doubleValue() == 1.0) { // When scrolled to the bottom
+                    if (listener != null) {
+                        listener.onLoadMoreMessages(user); // Notify controller to load more
+                    }
+                }
+            });
         });
     }
 
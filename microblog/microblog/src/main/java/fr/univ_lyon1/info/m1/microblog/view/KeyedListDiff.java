@@ -0,0 +1,185 @@
+package fr.univ_lyon1.info.m1.microblog.view;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * Reconciles a displayed list with a new order of items, matched by key
+ * (e.g. the message id), using as few operations as possible:
+ * <ul>
+ * <li>items whose key disappeared are removed;</li>
+ * <li>the longest run of items already in the new relative order stays in
+ * place, the other kept items are moved;</li>
+ * <li>items with a new key are inserted;</li>
+ * <li>items that stayed in place are replaced only if they changed.</li>
+ * </ul>
+ * Applied to the items of a {@link javafx.scene.control.ListView}, only the
+ * rows of the affected items are re-bound; the others keep their node as is.
+ */
+public final class KeyedListDiff {
+
+    private KeyedListDiff() {
+    }
+
+    /**
+     * Number of operations applied by a reconciliation.
+     */
+    public static final class Stats {
+        private final int inserted;
+        private final int moved;
+        private final int updated;
+        private final int removed;
+
+        private Stats(final int inserted, final int moved, final int updated,
+                final int removed) {
+            this.inserted = inserted;
+            this.moved = moved;
+            this.updated = updated;
+            this.removed = removed;
+        }
+
+        /**
+         * Returns the number of inserted items.
+         *
+         * @return the number of items with a new key
+         */
+        public int getInserted() {
+            return inserted;
+        }
+
+        /**
+         * Returns the number of moved items.
+         *
+         * @return the number of kept items that changed place
+         */
+        public int getMoved() {
+            return moved;
+        }
+
+        /**
+         * Returns the number of items replaced in place.
+         *
+         * @return the number of changed items that kept their place
+         */
+        public int getUpdated() {
+            return updated;
+        }
+
+        /**
+         * Returns the number of removed items.
+         *
+         * @return the number of items whose key disappeared
+         */
+        public int getRemoved() {
+            return removed;
+        }
+
+        @Override
+        public String toString() {
+            return "+" + inserted + " ~" + moved + " *" + updated + " -" + removed;
+        }
+    }
+
+    /**
+     * Turns a list into a new one, in place, with the minimal set of
+     * insertions, moves, updates and removals. Keys must be unique.
+     *
+     * @param <T> the type of the items
+     * @param <K> the type of their keys
+     * @param target the list to modify, e.g. the items of a ListView
+     * @param next the items it must hold, in order
+     * @param key gives the key of an item
+     * @param changed tells whether the new item of a key (second argument)
+     *                must replace the old one (first argument)
+     * @return the number of operations of each kind
+     */
+    public static <T, K> Stats reconcile(final List<T> target, final List<? extends T> next,
+            final Function<? super T, ? extends K> key,
+            final BiPredicate<? super T, ? super T> changed) {
+        Map<K, Integer> nextIndex = new HashMap<>();
+        for (int i = 0; i < next.size(); i++) {
+            nextIndex.put(key.apply(next.get(i)), i);
+        }
+
+        // Remove the items that are gone
+        int removed = 0;
+        for (int i = target.size() - 1; i >= 0; i--) {
+            if (!nextIndex.containsKey(key.apply(target.get(i)))) {
+                target.remove(i);
+                removed++;
+            }
+        }
+
+        // Keep in place the longest run already in the new order, take the
+        // other ones out to move them
+        int[] positions = new int[target.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = nextIndex.get(key.apply(target.get(i)));
+        }
+        boolean[] stable = longestIncreasingSubsequence(positions);
+        Set<K> movedKeys = new HashSet<>();
+        for (int i = positions.length - 1; i >= 0; i--) {
+            if (!stable[i]) {
+                movedKeys.add(key.apply(target.remove(i)));
+            }
+        }
+
+        // The remaining items are in the new order: insert the others where
+        // they belong, from the top, and update the changed ones
+        Set<K> present = new HashSet<>();
+        for (T item : target) {
+            present.add(key.apply(item));
+        }
+        int inserted = 0;
+        int updated = 0;
+        for (int j = 0; j < next.size(); j++) {
+            T item = next.get(j);
+            K k = key.apply(item);
+            if (!present.contains(k)) {
+                target.add(j, item);
+                if (!movedKeys.contains(k)) {
+                    inserted++;
+                }
+            } else if (changed.test(target.get(j), item)) {
+                target.set(j, item);
+                updated++;
+            }
+        }
+        return new Stats(inserted, movedKeys.size(), updated, removed);
+    }
+
+    // Marks one longest strictly increasing subsequence, in O(n log n)
+    private static boolean[] longestIncreasingSubsequence(final int[] values) {
+        int n = values.length;
+        int[] tails = new int[n]; // Index of the smallest tail of each length
+        int[] previous = new int[n];
+        int length = 0;
+        for (int i = 0; i < n; i++) {
+            int lo = 0;
+            int hi = length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (values[tails[mid]] < values[i]) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            previous[i] = lo > 0 ? tails[lo - 1] : -1;
+            tails[lo] = i;
+            if (lo == length) {
+                length++;
+            }
+        }
+        boolean[] stable = new boolean[n];
+        for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = previous[i]) {
+            stable[i] = true;
+        }
+        return stable;
+    }
+}
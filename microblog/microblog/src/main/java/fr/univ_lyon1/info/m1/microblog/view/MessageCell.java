@@ -0,0 +1,63 @@
+package fr.univ_lyon1.info.m1.microblog.view;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import fr.univ_lyon1.info.m1.microblog.model.Message;
+import fr.univ_lyon1.info.m1.microblog.model.MessageData;
+import fr.univ_lyon1.info.m1.microblog.model.User;
+import fr.univ_lyon1.info.m1.microblog.view.JfxView.ViewListener;
+import javafx.scene.control.ListCell;
+
+/**
+ * Row of a user's timeline. The {@link javafx.scene.control.ListView} only
+ * creates cells for the visible rows and reuses them while scrolling: each
+ * cell owns one {@link MessageWidget} and re-binds it to the message of its
+ * row.
+ */
+final class MessageCell extends ListCell<Message> {
+
+    private final MessageWidget widget;
+    private final User user;
+    private final Function<Message, MessageData> data;
+    private final Runnable onUpdate;
+
+    /**
+     * Creates a cell.
+     *
+     * @param user the user whose timeline is shown
+     * @param data gives the data of a message, as last rendered
+     * @param listener gives the listener notified of the clicks
+     * @param onUpdate called each time the cell shows another row
+     */
+    MessageCell(final User user, final Function<Message, MessageData> data,
+            final Supplier<ViewListener> listener, final Runnable onUpdate) {
+        this.widget = new MessageWidget(listener);
+        this.user = user;
+        this.data = data;
+        this.onUpdate = onUpdate;
+    }
+
+    @Override
+    protected void updateItem(final Message message, final boolean empty) {
+        super.updateItem(message, empty);
+        if (empty || message == null) {
+            setGraphic(null);
+        } else {
+            widget.bind(message, data.apply(message), user);
+            setGraphic(widget);
+        }
+        onUpdate.run();
+    }
+
+    // A row is re-bound only if it shows another message, or the same one
+    // with data that renders differently (score, bookmark, translation):
+    // renders give new snapshots even when nothing changed
+    @Override
+    protected boolean isItemChanged(final Message oldItem, final Message newItem) {
+        return oldItem == null || newItem == null || oldItem.getId() != newItem.getId()
+            || !MessageWidget.sameRendering(
+                (MessageData) widget.getProperties().get(MessageData.class),
+                data.apply(newItem));
+    }
+}
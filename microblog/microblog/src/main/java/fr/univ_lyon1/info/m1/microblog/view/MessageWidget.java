@@ -0,0 +1,155 @@
+package fr.univ_lyon1.info.m1.microblog.view;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import fr.univ_lyon1.info.m1.microblog.model.Message;
+import fr.univ_lyon1.info.m1.microblog.model.MessageData;
+import fr.univ_lyon1.info.m1.microblog.model.User;
+import fr.univ_lyon1.info.m1.microblog.view.JfxView.ViewListener;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+
+/**
+ * Widget displaying a message. Its nodes are created once and re-bound to
+ * another message with {@link #bind}, so that a list can recycle it instead
+ * of building a new tree for every message.
+ */
+final class MessageWidget extends VBox {
+
+    private static final String MSG_STYLE = "-fx-background-color: white; "
+            + "-fx-border-color: black; -fx-border-width: 1;"
+            + "-fx-border-radius: 10px;"
+            + "-fx-background-radius: 10px;"
+            + "-fx-padding: 8px; "
+            + "-fx-margin: 5px; ";
+
+    private final Button bookButton = new Button();
+    private final Label contentLabel = new Label();
+    private final Label translationLabel = new Label();
+    private final Label dateLabel = new Label();
+    private final Label scoreLabel = new Label();
+    private final Label authorLabel = new Label();
+
+    // Message and user currently shown, read by the event handlers
+    private Message message;
+    private User user;
+
+    /**
+     * Creates an empty widget.
+     *
+     * @param listener gives the listener notified of the clicks, which may
+     *                 change after the widget is created
+     */
+    MessageWidget(final Supplier<ViewListener> listener) {
+        setStyle(MSG_STYLE);
+
+        // Bouton pour supprimer le message
+        Button deleteButton = new Button("x");
+        deleteButton.setOnAction(e -> {
+            if (listener.get() != null) {
+                listener.get().onMessageDeleted(message, user);
+            }
+        });
+
+        // Bouton pour bookmark
+        bookButton.setOnAction(e -> {
+            if (listener.get() != null) {
+                listener.get().onBookmarkToggled(message, user);
+            }
+        });
+
+        // Bouton pour traduction
+        Button translateButton = new Button("Traduire");
+        translateButton.setOnAction(e -> {
+            if (listener.get() != null) {
+                listener.get().onTranslateRequested(message, user);
+            }
+        });
+
+        // La traduction n'occupe de place que si elle est affichée
+        translationLabel.managedProperty().bind(translationLabel.visibleProperty());
+        dateLabel.setTextFill(Color.LIGHTGRAY);
+        scoreLabel.setTextFill(Color.DARKORANGE);
+
+        // Gestion de l'abonnement/désabonnement, sauf pour ses propres messages
+        authorLabel.setOnMouseClicked(e -> {
+            User author = message.getAuthor();
+            if (author.equals(user)) {
+                return;
+            }
+            if (user.getSubscriptions().contains(author)) {
+                // Si déjà abonné, se désabonner
+                user.unsubscribe(author);
+                System.out.println("Unsubscribed from " + author.getId());
+            } else {
+                // Sinon, s'abonner
+                user.subscribe(author);
+                System.out.println("Subscribed to " + author.getId());
+            }
+        });
+
+        getChildren().addAll(new HBox(deleteButton, bookButton, translateButton),
+            contentLabel, translationLabel, dateLabel, scoreLabel, authorLabel);
+    }
+
+    /**
+     * Tells whether a widget bound with some data looks the same with other
+     * data of the same message: same bookmark, score and translation.
+     *
+     * @param shown the data the widget was bound with, or null
+     * @param data the new data, or null
+     * @return true if binding the new data would change nothing
+     */
+    static boolean sameRendering(final MessageData shown, final MessageData data) {
+        return shown != null && data != null
+            && shown.isBookmarked() == data.isBookmarked()
+            && shown.getScore() == data.getScore()
+            && Objects.equals(shown.getTranslatedContent(), data.getTranslatedContent());
+    }
+
+    /**
+     * Shows a message in this widget, replacing the previous one.
+     *
+     * @param message the message to display
+     * @param messageData the data of the message for the user
+     * @param user the user viewing the message
+     */
+    void bind(final Message message, final MessageData messageData, final User user) {
+        User author = message.getAuthor();
+        if (author == null) {
+            throw new IllegalStateException("Message author cannot be null");
+        }
+        this.message = message;
+        this.user = user;
+        // Remember what the widget shows, to find it back later
+        setUserData(message);
+        getProperties().put(MessageData.class, messageData);
+
+        bookButton.setText(messageData.isBookmarked() ? "⭐" : "Click to bookmark");
+        contentLabel.setText(message.getContent());
+
+        // Affichage de la traduction si disponible
+        String translatedContent = message.getTranslatedContent(user);
+        boolean translated = translatedContent != null && !translatedContent.isEmpty();
+        translationLabel.setVisible(translated);
+        translationLabel.setText(translated ? "Traduction: " + translatedContent : "");
+
+        dateLabel.setText("Published on: " + message.getFormattedDate());
+        scoreLabel.setText("Score: " + messageData.getScore());
+
+        if (author.equals(user)) {
+            // Si l'utilisateur est l'auteur du message, affiche "Me" et retire le
+            // soulignement
+            authorLabel.setText("Me");
+            authorLabel.setStyle("-fx-text-fill: black;"); // Pas de soulignement ni de clic
+        } else {
+            // Sinon, affiche le nom de l'auteur et permet de s'abonner ou se désabonner
+            authorLabel.setText("Author: " + author.getId());
+            authorLabel.setStyle("-fx-underline: true; -fx-text-fill: blue;");
+        }
+    }
+}
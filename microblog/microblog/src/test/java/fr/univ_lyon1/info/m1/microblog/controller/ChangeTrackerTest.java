@@ -0,0 +1,76 @@
+package fr.univ_lyon1.info.m1.microblog.controller;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import fr.univ_lyon1.info.m1.microblog.model.User;
+import fr.univ_lyon1.info.m1.microblog.view.IView;
+
+class ChangeTrackerTest {
+
+    private ChangeTracker changes;
+    private IView view1;
+    private IView view2;
+    private User foo;
+    private User bar;
+
+    @BeforeEach
+    void setUp() {
+        changes = new ChangeTracker();
+        view1 = mock(IView.class);
+        view2 = mock(IView.class);
+        foo = new User("foo");
+        bar = new User("bar");
+    }
+
+    @Test
+    void testMarkUser() {
+        changes.markUser(Arrays.asList(view1, view2), foo);
+
+        assertThat(changes.isDirty(view1, foo), is(true));
+        assertThat(changes.isDirty(view2, foo), is(true));
+        assertThat(changes.isDirty(view1, bar), is(false));
+        assertThat(changes.isModelChanged(), is(false));
+    }
+
+    @Test
+    void testMarkAllUsersOfOneView() {
+        changes.markAllUsers(Collections.singletonList(view1));
+        changes.markUser(Collections.singletonList(view1), foo);
+
+        assertThat(changes.isDirty(view1, foo), is(true));
+        assertThat(changes.isDirty(view1, bar), is(true));
+        assertThat(changes.isDirty(view2, foo), is(false));
+    }
+
+    @Test
+    void testClear() {
+        changes.markUser(Collections.singletonList(view1), foo);
+        changes.markModelChanged();
+        assertThat(changes.isEmpty(), is(false));
+
+        changes.clear();
+
+        assertThat(changes.isEmpty(), is(true));
+        assertThat(changes.isDirty(view1, foo), is(false));
+        assertThat(changes.isModelChanged(), is(false));
+    }
+
+    @Test
+    void testClearModelChangedKeepsDirtyPanes() {
+        changes.markUser(Collections.singletonList(view1), foo);
+        changes.markModelChanged();
+
+        changes.clearModelChanged();
+
+        assertThat(changes.isModelChanged(), is(false));
+        assertThat(changes.isDirty(view1, foo), is(true));
+    }
+}
@@ -1,27 +1,50 @@
 package fr.univ_lyon1.info.m1.microblog.controller;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.notNull;
+import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import org.mockito.ArgumentCaptor;
+
 import fr.univ_lyon1.info.m1.microblog.model.ChronologicalStrategy;
 import fr.univ_lyon1.info.m1.microblog.model.DisplayStrategy;
+import fr.univ_lyon1.info.m1.microblog.model.IModelListener;
 import fr.univ_lyon1.info.m1.microblog.model.Message;
+import fr.univ_lyon1.info.m1.microblog.model.MessageData;
+import fr.univ_lyon1.info.m1.microblog.model.MostRelevantStrategy;
 import fr.univ_lyon1.info.m1.microblog.model.TextMessage;
+import fr.univ_lyon1.info.m1.microblog.model.TranslationService;
 import fr.univ_lyon1.info.m1.microblog.model.User;
 import fr.univ_lyon1.info.m1.microblog.model.Y;
+import fr.univ_lyon1.info.m1.microblog.view.IView;
 import fr.univ_lyon1.info.m1.microblog.view.JfxView;
+import fr.univ_lyon1.info.m1.microblog.view.KeyedListDiff;
 
 /**
  * Test class for maincontroller.java.
@@ -70,8 +93,8 @@ class MainControllerTest {
         controller.publishMessage("testContent", user);
         verify(model).addMessage(any(TextMessage.class));
         verify(model, times(1)).notifyListeners();
-        verify(view1, times(1)).updateMessages(eq(user), any(LinkedHashMap.class));
-        verify(view2, times(1)).updateMessages(eq(user), any(LinkedHashMap.class));
+        verify(view1, times(1)).updateMessages(eq(user), notNull());
+        verify(view2, times(1)).updateMessages(eq(user), notNull());
     }
 
     @Test
@@ -88,8 +111,8 @@ class MainControllerTest {
 
         // Assert
         assertTrue(message.getMessageData(user).isBookmarked(), "Message should be bookmarked");
-        verify(view1, times(1)).updateMessages(eq(user), any(LinkedHashMap.class));
-        verify(view2, times(1)).updateMessages(eq(user), any(LinkedHashMap.class));
+        verify(view1, times(1)).updateMessages(eq(user), notNull());
+        verify(view2, times(1)).updateMessages(eq(user), notNull());
     }
 
     @Test
@@ -97,8 +120,8 @@ class MainControllerTest {
         DisplayStrategy strategy = new ChronologicalStrategy();
         when(model.getUsers()).thenReturn(Arrays.asList(user));
         controller.setDisplayStrategy(strategy);
-        verify(view1, times(1)).updateMessages(eq(user), any(LinkedHashMap.class));
-        verify(view2, times(1)).updateMessages(eq(user), any(LinkedHashMap.class));
+        verify(view1, times(1)).updateMessages(eq(user), notNull());
+        verify(view2, times(1)).updateMessages(eq(user), notNull());
     }
 
     @Test
@@ -115,8 +138,387 @@ class MainControllerTest {
         controller.loadMoreMessages(user);
 
         // Assert
-        verify(view1, times(1)).updateMessages(eq(user), any(LinkedHashMap.class));
-        verify(view2, times(1)).updateMessages(eq(user), any(LinkedHashMap.class));
+        verify(view1, times(1)).updateMessages(eq(user), notNull());
+        verify(view2, times(1)).updateMessages(eq(user), notNull());
+    }
+
+    @Test
+    void testLoadMoreAppendsTheNextPage() {
+        model = new Y();
+        controller = new MainController(model, view1, view2);
+        User user = model.createUser("testUser");
+        int total = MainController.PAGE_SIZE + 5;
+        for (int i = 0; i < total; i++) {
+            Message m = new Message("Message " + i, user);
+            m.setCreatedAt(1000L * i);
+            model.addMessage(m);
+        }
+        controller.startApp();
+        ArgumentCaptor<LinkedHashMap<Message, MessageData>> shown = messagesCaptor();
+        verify(view1).updateMessages(eq(user), shown.capture());
+        assertThat(shown.getValue().size(), is(MainController.PAGE_SIZE));
+
+        controller.loadMoreMessages(user);
+        controller.loadMoreMessages(user); // Last page already shown
+
+        ArgumentCaptor<LinkedHashMap<Message, MessageData>> next = messagesCaptor();
+        verify(view1, times(1)).appendMessages(eq(user), next.capture());
+        verify(view2, times(1)).appendMessages(eq(user), same(next.getValue()));
+        assertThat(next.getValue().size(), is(5));
+        assertThat(next.getValue().keySet().iterator().next().getContent(),
+            is("Message " + (total - MainController.PAGE_SIZE - 1)));
+        // The messages already shown are not rendered again
+        verify(view1, times(1)).updateMessages(eq(user), notNull());
+
+        // Later renders keep the loaded pages
+        controller.setScoringPipeline(controller.getScoringPipeline());
+        verify(view1, times(2)).updateMessages(eq(user), shown.capture());
+        assertThat(shown.getValue().size(), is(total));
+    }
+
+    @Test
+    void testUnchangedTimelinesComeFromTheCache() {
+        model = new Y();
+        controller = new MainController(model, view1, view2);
+        User user = model.createUser("testUser");
+        model.addMessage(new Message("Hello", user));
+        model.addMessage(new Message("World", user));
+        DisplayStrategy chronological = new ChronologicalStrategy();
+        DisplayStrategy mostRelevant = new MostRelevantStrategy();
+        controller.setDisplayStrategy(chronological);
+        controller.setDisplayStrategy(mostRelevant);
+        controller.getScoringPipeline().resetCounters();
+        controller.getTimelineCache().resetCounters();
+
+        // Back and forth: nothing changed, nothing is scored again
+        controller.setDisplayStrategy(chronological);
+        controller.setDisplayStrategy(mostRelevant);
+
+        assertThat(controller.getScoringPipeline().getStageCalls(0), is(0L));
+        assertThat(controller.getTimelineCache().getHits(), is(2L));
+        // The views are still updated, with the cached timelines
+        verify(view1, times(4)).updateMessages(eq(user), notNull());
+
+        // A bookmark changes the user's version: the timeline is recomputed
+        Message message = model.getMessages().get(0);
+        controller.toggleBookmark(message, user);
+
+        assertThat(controller.getTimelineCache().getMisses(), is(1L));
+        assertThat(controller.getScoringPipeline().getStageCalls(0), is(2L));
+    }
+
+    @Test
+    void testChronologicalRenderScoresOnlyThePage() {
+        model = new Y();
+        controller = new MainController(model, view1, view2);
+        User user = model.createUser("testUser");
+        for (int i = 0; i < 3 * MainController.PAGE_SIZE; i++) {
+            model.addMessage(new Message("Message " + i, user));
+        }
+        controller.getScoringPipeline().resetCounters();
+
+        controller.setDisplayStrategy(new ChronologicalStrategy());
+
+        // The page, and one more message to know that another page follows
+        assertThat(controller.getScoringPipeline().getStageCalls(0),
+            is((long) MainController.PAGE_SIZE + 1));
+        ArgumentCaptor<LinkedHashMap<Message, MessageData>> captor = messagesCaptor();
+        verify(view1).updateMessages(eq(user), captor.capture());
+        assertThat(captor.getValue().size(), is(MainController.PAGE_SIZE));
+    }
+
+    @Test
+    void testToggleBookmarkRefreshesOnlyThatUser() {
+        model = new Y();
+        controller = new MainController(model, view1, view2);
+        User user = model.createUser("testUser");
+        User other = model.createUser("otherUser");
+        Message message = new Message("Bookmark this", user);
+        model.addMessage(message);
+
+        controller.toggleBookmark(message, user);
+
+        verify(view1, times(1)).updateMessages(eq(user), notNull());
+        verify(view2, times(1)).updateMessages(eq(user), notNull());
+        verify(view1, never()).updateMessages(eq(other), notNull());
+        verify(view2, never()).updateMessages(eq(other), notNull());
+    }
+
+    @Test
+    void testPublishNotifiesListenersOnce() {
+        model = new Y();
+        controller = new MainController(model, view1, view2);
+        User user = model.createUser("testUser");
+        model.createUser("otherUser");
+        IModelListener listener = mock(IModelListener.class);
+        model.registerListener(listener);
+
+        controller.publishMessage("Hello", user);
+
+        verify(listener, times(1)).onModelUpdated(anyList(), anyList());
+    }
+
+    @Test
+    void testTimelineComputedOnceForAllViews() {
+        model = new Y();
+        JfxView view3 = mock(JfxView.class);
+        controller = new MainController(model, Arrays.asList(view1, view2, view3));
+        User user = model.createUser("testUser");
+        model.addMessage(new Message("Hello", user));
+        model.addMessage(new Message("World", user));
+        controller.getScoringPipeline().resetCounters();
+
+        controller.setDisplayStrategy(new ChronologicalStrategy());
+
+        ArgumentCaptor<LinkedHashMap<Message, MessageData>> captor = messagesCaptor();
+        verify(view1).updateMessages(eq(user), captor.capture());
+        verify(view2).updateMessages(eq(user), same(captor.getValue()));
+        verify(view3).updateMessages(eq(user), same(captor.getValue()));
+        // Each stage ran once per message, not once per view
+        assertThat(controller.getScoringPipeline().getStageCalls(0), is(2L));
+    }
+
+    @Test
+    void testAddViewAfterStart() {
+        model = new Y();
+        controller = new MainController(model, view1, view2);
+        User user = model.createUser("testUser");
+        controller.startApp();
+        JfxView view3 = mock(JfxView.class);
+
+        controller.addView(view3);
+
+        verify(view3).setViewListener(any());
+        verify(view3).createUsersPanes(model.getUsers());
+        verify(view3).updateMessages(eq(user), notNull());
+        verify(view1, times(1)).updateMessages(eq(user), notNull());
+    }
+
+    @Test
+    void testSupersededRenderIsRedoneByTheNextOne() {
+        model = new Y();
+        Queue<Runnable> renderQueue = new ArrayDeque<>();
+        Queue<Runnable> uiQueue = new ArrayDeque<>();
+        controller = new MainController(model, Arrays.asList(view1, view2),
+            new RenderScheduler(renderQueue::add, uiQueue::add));
+        User user = model.createUser("testUser");
+        User other = model.createUser("otherUser");
+        Message message = new Message("Bookmark this", user);
+        model.addMessage(message);
+
+        controller.toggleBookmark(message, user);
+        controller.toggleBookmark(message, other);
+        verify(view1, never()).updateMessages(any(), any());
+
+        while (!renderQueue.isEmpty() || !uiQueue.isEmpty()) {
+            if (!renderQueue.isEmpty()) {
+                renderQueue.poll().run();
+            } else {
+                uiQueue.poll().run();
+            }
+        }
+
+        verify(view1, times(1)).updateMessages(eq(user), notNull());
+        verify(view1, times(1)).updateMessages(eq(other), notNull());
+        verify(view2, times(1)).updateMessages(eq(other), notNull());
+    }
+
+    @Test
+    void testLoadMoreRunsOnTheRenderScheduler() {
+        model = new Y();
+        Queue<Runnable> renderQueue = new ArrayDeque<>();
+        Queue<Runnable> uiQueue = new ArrayDeque<>();
+        controller = new MainController(model, Arrays.asList(view1, view2),
+            new RenderScheduler(renderQueue::add, uiQueue::add));
+        User user = model.createUser("testUser");
+        User other = model.createUser("otherUser");
+        for (int i = 0; i < MainController.PAGE_SIZE + 5; i++) {
+            model.addMessage(new Message("Message " + i, user));
+        }
+        controller.startApp();
+        drain(renderQueue, uiQueue);
+
+        controller.loadMoreMessages(user);
+        verify(view1, never()).appendMessages(any(), any());
+        // A later render supersedes the load, but does it as well
+        controller.toggleBookmark(model.getMessages().get(0), other);
+        drain(renderQueue, uiQueue);
+
+        verify(view1, times(1)).appendMessages(eq(user), notNull());
+        verify(view1, times(2)).updateMessages(eq(other), notNull());
+        verify(view1, times(1)).updateMessages(eq(user), notNull());
+    }
+
+    // Runs the queued renders and their results until none is left
+    private static void drain(final Queue<Runnable> renderQueue, final Queue<Runnable> uiQueue) {
+        while (!renderQueue.isEmpty() || !uiQueue.isEmpty()) {
+            if (!renderQueue.isEmpty()) {
+                renderQueue.poll().run();
+            } else {
+                uiQueue.poll().run();
+            }
+        }
+    }
+
+    @Test
+    void testTranslationUpdatesOnlyTheMessageWidget() throws Exception {
+        model = new Y();
+        controller = new MainController(model, view1, view2);
+        User user = model.createUser("testUser");
+        Message message = new Message("Hello", user);
+        model.addMessage(message);
+        TranslationService translations = mock(TranslationService.class);
+        Map<String, Set<String>> pairs = new HashMap<>();
+        pairs.put("eng", new HashSet<>(Arrays.asList("spa", "fra")));
+        when(translations.listPairs()).thenReturn(CompletableFuture.completedFuture(pairs));
+        when(translations.translateVia("Hello", Arrays.asList("eng", "fra")))
+            .thenReturn(CompletableFuture.completedFuture("Bonjour"));
+        controller.setTranslationService(translations);
+
+        controller.translateMessage(message, user).get();
+
+        assertThat(message.getTranslatedContent(user), is("Bonjour"));
+        verify(view1).updateMessage(user, message);
+        verify(view2).updateMessage(user, message);
+        verify(view1, never()).updateMessages(any(), any());
+    }
+
+    @Test
+    void testModelChangesUpdateThePopulatedPanes() {
+        model = new Y();
+        User user = model.createUser("testUser");
+        Message m1 = timed("first", 1000, user);
+        Message m3 = timed("third", 3000, user);
+        DiffingView view = new DiffingView();
+        controller = new MainController(model, Arrays.asList(view));
+        controller.startApp();
+        assertThat(view.rows.get(user), contains(m3, m1));
+
+        // A new message takes its place in the order of the strategy
+        Message m2 = timed("second", 2000, user);
+        assertThat(view.rows.get(user), contains(m3, m2, m1));
+
+        // A new user gets a pane with the current timeline
+        User late = model.createUser("lateUser");
+        assertThat(view.rows.get(late), contains(m3, m2, m1));
+
+        // A deleted message leaves every pane
+        model.deleteMessage(m1);
+        assertThat(view.rows.get(user), contains(m3, m2));
+        assertThat(view.rows.get(late), contains(m3, m2));
+
+        // A change of data renders the pane of its user only
+        int lateRenders = view.renders.get(late);
+        model.toggleBookmark(m3, user);
+        model.notifyListeners();
+        assertThat(view.data.get(user).get(m3).isBookmarked(), is(true));
+        assertThat(view.rows.get(user), contains(m3, m2));
+        assertThat(view.renders.get(late), is(lateRenders));
+    }
+
+    @Test
+    void testOnlyPanesReachingTheMessageAreRendered() {
+        model = new Y();
+        User user = model.createUser("testUser");
+        for (int i = 1; i <= MainController.PAGE_SIZE + 1; i++) {
+            timed("Message " + i, 1000L * i, user);
+        }
+        DiffingView view = new DiffingView();
+        controller = new MainController(model, Arrays.asList(view));
+        controller.startApp();
+        int renders = view.renders.get(user);
+
+        // After the last loaded page: nothing to render
+        Message early = timed("early", 500, user);
+        model.deleteMessage(early);
+        assertThat(view.renders.get(user), is(renders));
+
+        // Within the loaded page: rendered in place
+        Message late = timed("late", 1000L * (MainController.PAGE_SIZE + 2), user);
+        assertThat(view.renders.get(user), is(renders + 1));
+        assertThat(view.rows.get(user).get(0), is(late));
+        model.deleteMessage(late);
+        assertThat(view.renders.get(user), is(renders + 2));
+        assertThat(view.rows.get(user).contains(late), is(false));
+    }
+
+    @Test
+    void testPublishedMessageShowsOnTop() {
+        model = new Y();
+        User user = model.createUser("testUser");
+        User other = model.createUser("otherUser");
+        for (int i = 1; i <= 2 * MainController.PAGE_SIZE; i++) {
+            timed("Message " + i, 1000L * i, user);
+        }
+        DiffingView view = new DiffingView();
+        controller = new MainController(model, Arrays.asList(view));
+        controller.startApp();
+
+        controller.publishMessage("Hello", user);
+
+        assertThat(view.rows.get(user).get(0).getContent(), is("Hello"));
+        assertThat(view.rows.get(other).get(0).getContent(), is("Hello"));
+        assertThat(view.rows.get(user).size(), is(MainController.PAGE_SIZE));
     }
 
+    // Adds a message created at the given time
+    private Message timed(final String content, final long createdAt, final User author) {
+        Message m = new Message(content, author);
+        m.setCreatedAt(createdAt);
+        model.addMessage(m);
+        return m;
+    }
+
+    // A captor of the timelines passed to the views; ArgumentCaptor cannot
+    // be given a parameterized class without an unchecked conversion
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<LinkedHashMap<Message, MessageData>> messagesCaptor() {
+        return ArgumentCaptor.forClass(LinkedHashMap.class);
+    }
+
+    /**
+     * View keeping the rows of each pane like {@link JfxView}, by reconciling
+     * them with each timeline, without a JavaFX toolkit.
+     */
+    private static final class DiffingView implements IView {
+        private final Map<User, List<Message>> rows = new HashMap<>();
+        private final Map<User, Map<Message, MessageData>> data = new HashMap<>();
+        private final Map<User, Integer> renders = new HashMap<>();
+
+        @Override
+        public void setViewListener(final JfxView.ViewListener listener) {
+        }
+
+        @Override
+        public void updateMessages(final User user,
+                final LinkedHashMap<Message, MessageData> messagesData) {
+            KeyedListDiff.reconcile(rows.get(user), new ArrayList<>(messagesData.keySet()),
+                Message::getId, (shown, m) -> false);
+            data.put(user, messagesData);
+            renders.merge(user, 1, Integer::sum);
+        }
+
+        @Override
+        public void appendMessages(final User user,
+                final LinkedHashMap<Message, MessageData> messagesData) {
+            rows.get(user).addAll(messagesData.keySet());
+        }
+
+        @Override
+        public void createUsersPanes(final List<User> userList) {
+            rows.clear();
+            for (User user : userList) {
+                addUserPane(user);
+            }
+        }
+
+        @Override
+        public void addUserPane(final User user) {
+            rows.putIfAbsent(user, new ArrayList<>());
+        }
+
+        @Override
+        public void updateMessage(final User user, final Message message) {
+        }
+    }
 }
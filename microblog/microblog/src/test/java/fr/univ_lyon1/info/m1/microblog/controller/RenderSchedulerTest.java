@@ -0,0 +1,117 @@
+package fr.univ_lyon1.info.m1.microblog.controller;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RenderSchedulerTest {
+
+    private Queue<Runnable> renderQueue;
+    private Queue<Runnable> uiQueue;
+    private RenderScheduler scheduler;
+    private List<String> applied;
+
+    @BeforeEach
+    void setUp() {
+        renderQueue = new ArrayDeque<>();
+        uiQueue = new ArrayDeque<>();
+        scheduler = new RenderScheduler(renderQueue::add, uiQueue::add);
+        applied = new ArrayList<>();
+    }
+
+    private static void runAll(final Queue<Runnable> queue) {
+        while (!queue.isEmpty()) {
+            queue.poll().run();
+        }
+    }
+
+    @Test
+    void testResultAppliedOnUiExecutor() {
+        scheduler.schedule(cancelled -> "first", applied::add);
+
+        runAll(renderQueue);
+        assertThat(applied, is(empty()));
+
+        runAll(uiQueue);
+        assertThat(applied, contains("first"));
+    }
+
+    @Test
+    void testNewerRenderSupersedesPendingOnes() {
+        List<String> computed = new ArrayList<>();
+        scheduler.schedule(cancelled -> {
+            computed.add("first");
+            return "first";
+        }, applied::add);
+        scheduler.schedule(cancelled -> {
+            computed.add("second");
+            return "second";
+        }, applied::add);
+
+        runAll(renderQueue);
+        runAll(uiQueue);
+
+        assertThat(computed, contains("second"));
+        assertThat(applied, contains("second"));
+    }
+
+    @Test
+    void testStaleResultIsNotApplied() {
+        scheduler.schedule(cancelled -> "first", applied::add);
+        runAll(renderQueue);
+
+        scheduler.schedule(cancelled -> "second", applied::add);
+        runAll(uiQueue);
+        assertThat(applied, is(empty()));
+
+        runAll(renderQueue);
+        runAll(uiQueue);
+        assertThat(applied, contains("second"));
+    }
+
+    @Test
+    void testRunningRenderSeesCancellation() {
+        List<Boolean> seen = new ArrayList<>();
+        scheduler.schedule(cancelled -> {
+            seen.add(cancelled.getAsBoolean());
+            scheduler.cancelAll();
+            seen.add(cancelled.getAsBoolean());
+            return "first";
+        }, applied::add);
+
+        runAll(renderQueue);
+        runAll(uiQueue);
+
+        assertThat(seen, contains(false, true));
+        assertThat(applied, is(empty()));
+    }
+
+    @Test
+    void testBackgroundExecutor() throws InterruptedException {
+        ExecutorService executor = RenderScheduler.newRenderExecutor();
+        CountDownLatch done = new CountDownLatch(1);
+        List<String> threads = new ArrayList<>();
+        scheduler = new RenderScheduler(executor, r -> {
+            r.run();
+            done.countDown();
+        });
+
+        scheduler.schedule(cancelled -> Thread.currentThread().getName(), threads::add);
+
+        assertThat(done.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(threads, contains("timeline-render"));
+        executor.shutdown();
+    }
+}
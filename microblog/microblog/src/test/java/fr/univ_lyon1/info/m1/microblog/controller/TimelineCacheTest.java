@@ -0,0 +1,75 @@
+package fr.univ_lyon1.info.m1.microblog.controller;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import fr.univ_lyon1.info.m1.microblog.model.TimelinePage;
+
+class TimelineCacheTest {
+
+    private long now;
+    private int computed;
+    private TimelineCache cache;
+
+    @BeforeEach
+    void setUp() {
+        now = 0;
+        computed = 0;
+        cache = new TimelineCache(2, Duration.ofSeconds(10), () -> now);
+    }
+
+    private TimelinePage get(final Object... key) {
+        List<Object> k = Arrays.asList(key);
+        return cache.get(k, () -> {
+            computed++;
+            return new TimelinePage(new LinkedHashMap<>(), null);
+        });
+    }
+
+    @Test
+    void testSameInputsAreComputedOnce() {
+        TimelinePage first = get("foo", 1L);
+
+        assertThat(get("foo", 1L), is(sameInstance(first)));
+        get("foo", 2L); // A new version is a new timeline
+        assertThat(computed, is(2));
+        assertThat(cache.getHits(), is(1L));
+        assertThat(cache.getMisses(), is(2L));
+        assertThat(cache.getHitRate(), is(1.0 / 3));
+    }
+
+    @Test
+    void testLeastRecentlyUsedIsEvicted() {
+        get("a");
+        get("b");
+        get("a");
+        get("c"); // Evicts b, the least recently used
+
+        assertThat(cache.size(), is(2));
+        assertThat(cache.getEvictions(), is(1L));
+        get("a");
+        assertThat(computed, is(3));
+        get("b");
+        assertThat(computed, is(4));
+    }
+
+    @Test
+    void testEntriesExpire() {
+        get("a");
+        now = 9_999;
+        get("a");
+        now = 10_000;
+        get("a");
+
+        assertThat(computed, is(2));
+    }
+}
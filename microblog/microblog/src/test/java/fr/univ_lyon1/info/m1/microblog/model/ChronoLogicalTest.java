@@ -1,7 +1,10 @@
 package fr.univ_lyon1.info.m1.microblog.model;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -34,9 +37,41 @@ class ChronologicalStrategyTest {
 
         // Assert: Validate the order of messages
         Message[] sortedArray = sortedMessages.keySet().toArray(new Message[0]);
-        assertEquals(msg1, sortedArray[0], "Oldest message should be first");
+        assertEquals(msg3, sortedArray[0], "Newest message should be first");
         assertEquals(msg2, sortedArray[1], "Middle message should be second");
-        assertEquals(msg3, sortedArray[2], "Newest message should be last");
+        assertEquals(msg1, sortedArray[2], "Oldest message should be last");
+    }
+
+    @Test
+    void testUsesModelTimeIndex() {
+        Y model = new Y();
+        Message msg1 = new TextMessage("Oldest");
+        Message msg2 = new TextMessage("Middle");
+        Message msg3 = new TextMessage("Newest");
+        model.addMessage(msg3);
+        model.addMessage(msg1);
+        model.addMessage(msg2);
+        // Dates changed after insertion must be re-indexed
+        msg1.setDateCreated(new Date(1000));
+        msg2.setDateCreated(new Date(2000));
+        msg3.setDateCreated(new Date(3000));
+
+        ChronologicalStrategy strategy = new ChronologicalStrategy();
+
+        // Only the page and the next message are read from the index
+        List<Message> first = strategy.selectCandidates(model, null, 1);
+        Map<Message, MessageData> messagesData = new LinkedHashMap<>();
+        for (Message m : first) {
+            messagesData.put(m, new MessageData());
+        }
+        TimelinePage page = strategy.filterAndSortPage(messagesData, null, 1);
+        List<Message> second = strategy.selectCandidates(model, page.getNextCursor(), 1);
+
+        assertEquals(Arrays.asList(msg3, msg2), first);
+        assertEquals(Arrays.asList(msg3), new ArrayList<>(page.getMessages().keySet()));
+        assertEquals(Arrays.asList(msg2, msg1), second);
+        assertEquals(Arrays.asList(msg3, msg2, msg1),
+            strategy.selectCandidates(model, null, Integer.MAX_VALUE));
     }
 
     @Test
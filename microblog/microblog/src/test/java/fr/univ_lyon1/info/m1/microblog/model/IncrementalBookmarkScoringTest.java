@@ -0,0 +1,80 @@
+package fr.univ_lyon1.info.m1.microblog.model;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class IncrementalBookmarkScoringTest {
+
+    private Y model;
+    private User user;
+    private Message m1;
+    private Message m2;
+    private Message m3;
+
+    @BeforeEach
+    void setUp() {
+        model = new Y();
+        user = model.createUser("foo");
+        m1 = new Message("Hello, everyone!", user);
+        m2 = new Message("Everyone loves Java.", user);
+        m3 = new Message("Java is powerful.", user);
+        model.addMessage(m1);
+        model.addMessage(m2);
+        model.addMessage(m3);
+    }
+
+    @Test
+    void testToggleUpdatesScores() {
+        model.toggleBookmark(m1, user);
+
+        assertThat(model.getBookmarkScore(user, m1), is(2));
+        assertThat(model.getBookmarkScore(user, m2), is(1));
+        assertThat(model.getBookmarkScore(user, m3), is(0));
+
+        model.toggleBookmark(m1, user);
+
+        assertThat(model.getBookmarkScore(user, m1), is(0));
+        assertThat(model.getBookmarkScore(user, m2), is(0));
+    }
+
+    @Test
+    void testPublishAndDelete() {
+        model.toggleBookmark(m3, user);
+        Message m4 = new Message("Java again", user);
+        model.addMessage(m4);
+
+        assertThat(model.getBookmarkScore(user, m4), is(1));
+
+        model.deleteMessage(m3);
+
+        assertThat(model.getBookmarkScore(user, m4), is(0));
+        assertThat(model.getBookmarkScore(user, m2), is(0));
+    }
+
+    @Test
+    void testMatchesFullRecomputation() {
+        User other = model.createUser("bar");
+        model.toggleBookmark(m2, user);
+        model.toggleBookmark(m3, other);
+        model.addMessage(new Message("Everyone is powerful", other));
+        model.toggleBookmark(m2, user);
+        model.toggleBookmark(m1, user);
+
+        for (User u : model.getUsers()) {
+            Map<Message, MessageData> data = new LinkedHashMap<>();
+            for (Message m : model.getMessages()) {
+                data.put(m, m.peekMessageData(u).snapshot());
+            }
+            new BookmarkScoring().computeScores(data);
+            for (Map.Entry<Message, MessageData> e : data.entrySet()) {
+                assertThat(model.getBookmarkScore(u, e.getKey()), is(e.getValue().getScore()));
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package fr.univ_lyon1.info.m1.microblog.model;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class InvertedIndexTest {
+
+    @Test
+    void testPostingsFollowAddAndRemove() {
+        InvertedIndex index = new InvertedIndex();
+        Message m1 = new Message("Java is fun");
+        Message m2 = new Message("Hello Java");
+        Message m3 = new Message("Hello world");
+        // Out of id order on purpose
+        index.add(m2);
+        index.add(m1);
+        index.add(m3);
+        int java = WordDictionary.intern("java");
+
+        List<Integer> ids = new ArrayList<>();
+        index.forEachMessage(java, ids::add);
+        assertThat(ids, contains(m1.getId(), m2.getId()));
+
+        index.remove(m1);
+
+        assertThat(index.count(java), is(1));
+        assertThat(index.count(WordDictionary.intern("fun")), is(0));
+    }
+}
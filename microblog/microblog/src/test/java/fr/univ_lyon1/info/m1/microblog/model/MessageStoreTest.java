@@ -0,0 +1,116 @@
+package fr.univ_lyon1.info.m1.microblog.model;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MessageStoreTest {
+
+    private MessageStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new MessageStore();
+    }
+
+    @Test
+    void testLookupById() {
+        Message m = new Message("Hello");
+        store.add(m);
+
+        assertThat(store.get(m.getId()), is(m));
+        assertThat(store.contains(m), is(true));
+    }
+
+    @Test
+    void testRemoveKeepsInsertionOrder() {
+        Message m1 = new Message("First");
+        Message m2 = new Message("Second");
+        Message m3 = new Message("Third");
+        store.add(m1);
+        store.add(m2);
+        store.add(m3);
+
+        store.remove(m2);
+
+        assertThat(store.asList(), contains(m1, m3));
+        assertThat(store.asList().get(1), is(m3));
+        assertThat(store.get(m2.getId()), is(nullValue()));
+        assertThat(store.size(), is(2));
+    }
+
+    @Test
+    void testPositionalAccessAfterManyRemovals() {
+        Message[] messages = new Message[10];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = new Message("Message " + i);
+            store.add(messages[i]);
+        }
+        for (int i = 0; i < messages.length; i += 2) {
+            store.remove(messages[i]);
+        }
+        Message last = new Message("Last");
+        store.add(last);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(store.asList().get(i), is(messages[2 * i + 1]));
+        }
+        assertThat(store.asList().get(5), is(last));
+        assertThat(store.asList(), contains(messages[1], messages[3], messages[5],
+            messages[7], messages[9], last));
+    }
+
+    @Test
+    void testRemoveWhileIteratingFailsFast() {
+        Message m1 = new Message("First");
+        Message m2 = new Message("Second");
+        store.add(m1);
+        store.add(m2);
+        Iterator<Message> it = store.iterator();
+        it.next();
+
+        store.remove(m1);
+
+        assertThrows(ConcurrentModificationException.class, it::hasNext);
+        assertThrows(ConcurrentModificationException.class, it::next);
+    }
+
+    @Test
+    void testReadsWhileIteratingKeepThePosition() {
+        Message[] messages = new Message[6];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = new Message("Message " + i);
+            store.add(messages[i]);
+        }
+        store.remove(messages[0]);
+        store.remove(messages[2]);
+
+        List<Message> seen = new ArrayList<>();
+        for (Message m : store) {
+            seen.add(m);
+            // Positional reads compact the store under the iterator
+            store.asList().get(0);
+        }
+
+        assertThat(seen, contains(messages[1], messages[3], messages[4], messages[5]));
+    }
+
+    @Test
+    void testAddTwiceIsIgnored() {
+        Message m = new Message("Hello");
+
+        assertThat(store.add(m), is(true));
+        assertThat(store.add(m), is(false));
+        assertThat(store.size(), is(1));
+    }
+}
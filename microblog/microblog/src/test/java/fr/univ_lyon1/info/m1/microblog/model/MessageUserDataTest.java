@@ -3,7 +3,11 @@ package fr.univ_lyon1.info.m1.microblog.model;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -94,6 +98,71 @@ class MessageUserDataTest {
         assertThat(importantMessage.getContent(), is("IMPORTANT: This is important"));
     }
 
+    @Test
+    void testUntouchedDataIsSharedDefault() {
+        Message m = new Message("Hello");
+        User user = new User("foo");
+
+        assertThat(m.peekMessageData(user), is(sameInstance(MessageData.DEFAULT)));
+        assertThrows(UnsupportedOperationException.class,
+            () -> m.peekMessageData(user).setScore(3));
+    }
+
+    @Test
+    void testBookmarkAllocatesAndReleasesUserData() {
+        Y model = new Y();
+        Message m = new Message("Hello");
+        User user = new User("foo");
+
+        model.toggleBookmark(m, user);
+        assertThat(m.peekMessageData(user), is(not(sameInstance(MessageData.DEFAULT))));
+        assertThat(m.peekMessageData(user).isBookmarked(), is(true));
+
+        model.toggleBookmark(m, user);
+        assertThat(m.peekMessageData(user), is(sameInstance(MessageData.DEFAULT)));
+    }
+
+    @Test
+    void testSnapshotCopiesUserStateOnly() {
+        Y model = new Y();
+        Message m = new Message("Hello");
+        User user = new User("foo");
+        model.toggleBookmark(m, user);
+
+        MessageData copy = m.peekMessageData(user).snapshot();
+        copy.setScore(4);
+
+        assertThat(copy.isBookmarked(), is(true));
+        assertThat(m.peekMessageData(user).getScore(), is(-1));
+    }
+
+    @Test
+    void testFrozenDataIsReadOnly() {
+        MessageData data = new MessageData();
+        data.setScore(3);
+
+        assertThat(data.freeze(), is(sameInstance(data)));
+        assertThrows(UnsupportedOperationException.class, () -> data.setScore(4));
+        assertThat(data.getScore(), is(3));
+    }
+
+    @Test
+    void testFormattedDateIsKeptUntilTheDateChanges() {
+        Message m = new Message("Hello", new User("alice"));
+        m.setDateCreated(new Date(0));
+        String formatted = m.getFormattedDate();
+
+        assertThat(m.getFormattedDate(), is(sameInstance(formatted)));
+        assertThat(m.getDateCreated().getTime(), is(0L));
+
+        // The returned date is a copy: changing it does not change the message
+        m.getDateCreated().setTime(1000);
+        assertThat(m.getCreatedAt(), is(0L));
+
+        m.setCreatedAt(24L * 60 * 60 * 1000);
+        assertThat(m.getFormattedDate(), is(not(formatted)));
+    }
+
     private void add(final Map<Message, MessageData> msgs, final Message m) {
         msgs.put(m, new MessageData());
     }
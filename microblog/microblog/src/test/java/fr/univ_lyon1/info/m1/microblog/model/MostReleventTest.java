@@ -55,6 +55,30 @@ class MostReleventTest {
                 sortedMessages[2], "Non-bookmarked, lowest score message should come last");
     }
 
+    @Test
+    void testTopKMatchesFullSort() {
+        MostRelevantStrategy strategy = new MostRelevantStrategy();
+        Map<Message, MessageData> messagesData = new LinkedHashMap<>();
+        for (int i = 0; i < 50; i++) {
+            Message m = new Message("Message " + i);
+            m.setCreatedAt(1000L * (i % 7));
+            MessageData d = new MessageData();
+            d.setScore(i % 5 - 1);
+            d.setBookmarked(i % 11 == 0);
+            messagesData.put(m, d);
+        }
+
+        Message[] full = strategy.filterAndSortMessages(messagesData)
+            .keySet().toArray(new Message[0]);
+        Message[] top = strategy.filterAndSortMessages(messagesData, 10)
+            .keySet().toArray(new Message[0]);
+
+        assertEquals(10, top.length);
+        for (int i = 0; i < top.length; i++) {
+            assertEquals(full[i], top[i], "Top-K should be a prefix of the full order");
+        }
+    }
+
     @Test
     void testToString() {
         // Given
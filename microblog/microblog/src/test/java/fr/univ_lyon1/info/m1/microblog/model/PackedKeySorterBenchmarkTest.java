@@ -0,0 +1,114 @@
+package fr.univ_lyon1.info.m1.microblog.model;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Time taken by {@link MostRelevantStrategy} to sort a large timeline with
+ * the packed-key engine, against the former stream of entries sorted with a
+ * comparator, and to read only its first screen from the lazy stream. Run
+ * with {@code mvn test -P benchmark}.
+ */
+@Tag("benchmark")
+class PackedKeySorterBenchmarkTest {
+
+    private static final int MESSAGES = 200_000;
+    private static final int ROUNDS = 20;
+    private static final int FIRST_SCREEN = 20;
+
+    // The order of MostRelevantStrategy, as a chain of boxed comparisons
+    private static final Comparator<Map.Entry<Message, MessageData>> ORDER = (e1, e2) -> {
+        boolean b1 = e1.getValue().isBookmarked();
+        boolean b2 = e2.getValue().isBookmarked();
+        if (b1 != b2) {
+            return b1 ? -1 : 1;
+        }
+        int scoreComparison = Integer.compare(e2.getValue().getScore(), e1.getValue().getScore());
+        if (scoreComparison != 0) {
+            return scoreComparison;
+        }
+        return e2.getKey().getDateCreated().compareTo(e1.getKey().getDateCreated());
+    };
+
+    private static LinkedHashMap<Message, MessageData> streamSort(
+            final Map<Message, MessageData> data) {
+        return data.entrySet().stream()
+            .filter(e -> e.getValue().isBookmarked() || e.getValue().getScore() >= 0)
+            .sorted(ORDER)
+            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue,
+                (e1, e2) -> e1, LinkedHashMap::new));
+    }
+
+    private static Map<Message, MessageData> timeline() {
+        Random random = new Random(1);
+        User user = new User("alice");
+        Map<Message, MessageData> data = new LinkedHashMap<>();
+        for (int i = 0; i < MESSAGES; i++) {
+            Message m = new Message("Message " + i, user);
+            m.setCreatedAt(1_700_000_000_000L + random.nextInt(1_000_000_000));
+            MessageData d = new MessageData();
+            d.setScore(random.nextInt(50) - 5);
+            d.setBookmarked(random.nextInt(100) == 0);
+            data.put(m, d);
+        }
+        return data;
+    }
+
+    @Test
+    void benchmarkMostRelevant() {
+        Map<Message, MessageData> data = timeline();
+        MostRelevantStrategy strategy = new MostRelevantStrategy();
+
+        assertThat(new ArrayList<>(strategy.filterAndSortMessages(data).keySet()),
+            is(new ArrayList<>(streamSort(data).keySet())));
+
+        long streamNanos = time(() -> streamSort(data));
+        long packedNanos = time(() -> strategy.filterAndSortMessages(data));
+        System.out.printf("MostRelevant, %d messages: stream %.1f ms, packed keys %.1f ms"
+            + " (x%.1f)%n", MESSAGES, streamNanos / 1e6, packedNanos / 1e6,
+            (double) streamNanos / packedNanos);
+    }
+
+    @Test
+    void benchmarkFirstScreen() {
+        Map<Message, MessageData> data = timeline();
+        MostRelevantStrategy strategy = new MostRelevantStrategy();
+
+        assertThat(strategy.streamMessages(data).limit(FIRST_SCREEN).map(Map.Entry::getKey)
+            .collect(Collectors.toList()), is(new ArrayList<>(
+                strategy.filterAndSortMessages(data).keySet()).subList(0, FIRST_SCREEN)));
+
+        long sortNanos = time(() -> strategy.filterAndSortMessages(data));
+        long lazyNanos = time(() -> strategy.streamMessages(data).limit(FIRST_SCREEN)
+            .forEach(e -> { }));
+        System.out.printf("MostRelevant, first %d of %d messages: full sort %.1f ms,"
+            + " lazy stream %.1f ms (x%.1f)%n", FIRST_SCREEN, MESSAGES, sortNanos / 1e6,
+            lazyNanos / 1e6, (double) sortNanos / lazyNanos);
+    }
+
+    // Median time of a run, after warming up
+    private static long time(final Runnable run) {
+        long[] times = new long[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            run.run();
+        }
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            run.run();
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        return times[ROUNDS / 2];
+    }
+}
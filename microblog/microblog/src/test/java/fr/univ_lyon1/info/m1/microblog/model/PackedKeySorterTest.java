@@ -0,0 +1,154 @@
+package fr.univ_lyon1.info.m1.microblog.model;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+class PackedKeySorterTest {
+
+    private static final Comparator<Map.Entry<Message, MessageData>> NEWEST_FIRST =
+        (e1, e2) -> Long.compare(e2.getKey().getCreatedAt(), e1.getKey().getCreatedAt());
+    private static final Comparator<Map.Entry<Message, MessageData>> BY_SCORE =
+        (e1, e2) -> Integer.compare(e2.getValue().getScore(), e1.getValue().getScore());
+
+    // Messages with many equal dates and scores, to check that ties keep the
+    // order of the map
+    private static Map<Message, MessageData> randomTimeline(final Random random,
+            final int size) {
+        User user = new User("alice");
+        Map<Message, MessageData> data = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            Message m = new Message("Message " + i, user);
+            m.setCreatedAt(1_700_000_000_000L + random.nextInt(20) * 1000L);
+            MessageData d = new MessageData();
+            d.setScore(random.nextInt(7) - 2);
+            d.setBookmarked(random.nextInt(5) == 0);
+            data.put(m, d);
+        }
+        return data;
+    }
+
+    // The order the strategies had with comparators over the entries
+    private static List<Message> reference(final Map<Message, MessageData> data,
+            final Predicate<Map.Entry<Message, MessageData>> filter,
+            final Comparator<Map.Entry<Message, MessageData>> order) {
+        return data.entrySet().stream().filter(filter).sorted(order)
+            .map(Map.Entry::getKey).collect(Collectors.toList());
+    }
+
+    @Test
+    void testStrategiesKeepTheirOrder() {
+        Random random = new Random(7);
+        for (int size : new int[] {0, 1, 10, 500}) {
+            Map<Message, MessageData> data = randomTimeline(random, size);
+
+            assertThat(new ArrayList<>(new ChronologicalStrategy()
+                .filterAndSortMessages(data).keySet()),
+                is(reference(data, e -> true, NEWEST_FIRST)));
+            assertThat(new ArrayList<>(new RecentRelevantStrategy()
+                .filterAndSortMessages(data).keySet()),
+                is(reference(data, e -> e.getValue().getScore() > 0,
+                    BY_SCORE.thenComparing(NEWEST_FIRST))));
+            Comparator<Map.Entry<Message, MessageData>> bookmarkedFirst = Comparator.comparing(
+                e -> !e.getValue().isBookmarked());
+            assertThat(new ArrayList<>(new MostRelevantStrategy()
+                .filterAndSortMessages(data).keySet()),
+                is(reference(data, e -> e.getValue().isBookmarked()
+                    || e.getValue().getScore() >= 0,
+                    bookmarkedFirst.thenComparing(BY_SCORE).thenComparing(NEWEST_FIRST))));
+        }
+    }
+
+    @Test
+    void testLimit() {
+        Map<Message, MessageData> data = randomTimeline(new Random(3), 100);
+
+        List<Message> all = new ArrayList<>(
+            new MostRelevantStrategy().filterAndSortMessages(data).keySet());
+        List<Message> first = new ArrayList<>(
+            new MostRelevantStrategy().filterAndSortMessages(data, 5).keySet());
+
+        assertThat(first, is(all.subList(0, 5)));
+    }
+
+    @Test
+    void testStreamReadsTheSameOrderLazily() {
+        Random random = new Random(11);
+        MostRelevantStrategy strategy = new MostRelevantStrategy();
+        for (int size : new int[] {0, 1, 10, 500, 5000}) {
+            Map<Message, MessageData> data = randomTimeline(random, size);
+            List<Message> all = new ArrayList<>(strategy.filterAndSortMessages(data).keySet());
+
+            // Reading everything goes past the switch to the radix sort
+            assertThat(strategy.streamMessages(data).map(Map.Entry::getKey)
+                .collect(Collectors.toList()), is(all));
+            for (int limit : new int[] {1, 7, size / 16 + 1, size / 3}) {
+                int expected = Math.min(limit, all.size());
+                assertThat(strategy.streamMessages(data).limit(limit).map(Map.Entry::getKey)
+                    .collect(Collectors.toList()), is(all.subList(0, expected)));
+            }
+        }
+    }
+
+    @Test
+    void testStreamDoesNothingUntilRead() {
+        Map<Message, MessageData> data = randomTimeline(new Random(5), 100);
+        int[] keyCalls = {0};
+        PackedKeySorter.KeyFunction key = (m, d) -> {
+            keyCalls[0]++;
+            return m.getCreatedAt();
+        };
+
+        Stream<Map.Entry<Message, MessageData>> stream =
+            PackedKeySorter.stream(data, (m, d) -> true, key);
+
+        assertThat(keyCalls[0], is(0));
+        Message first = stream.findFirst().get().getKey();
+        assertThat(first, is(PackedKeySorter.sort(data, (m, d) -> true, key, 1)
+            .keySet().iterator().next()));
+    }
+
+    @Test
+    void testKeysAreSortedAsUnsigned() {
+        long[] keys = {-1L, 0L, Long.MIN_VALUE, 5L, Long.MAX_VALUE};
+        int[] values = {0, 1, 2, 3, 4};
+
+        PackedKeySorter.sort(keys, values, keys.length);
+
+        assertThat(values[0], is(1));
+        assertThat(values[4], is(0));
+        long[] sorted = {0L, 5L, Long.MAX_VALUE, Long.MIN_VALUE, -1L};
+        for (int i = 0; i < keys.length; i++) {
+            assertThat(keys[i], is(sorted[i]));
+        }
+    }
+
+    @Test
+    void testPackOrdersFields() {
+        long now = 1_700_000_000_000L;
+        List<Long> keys = new ArrayList<>();
+        keys.add(PackedKeySorter.pack(false, 1, now, true));
+        keys.add(PackedKeySorter.pack(true, -5, now - 1, true));
+        keys.add(PackedKeySorter.pack(false, 1, now - 1, true));
+        keys.add(PackedKeySorter.pack(false, 2, now - 1, true));
+        keys.sort(Long::compareUnsigned);
+
+        assertThat(keys, contains(
+            PackedKeySorter.pack(true, -5, now - 1, true),
+            PackedKeySorter.pack(false, 2, now - 1, true),
+            PackedKeySorter.pack(false, 1, now, true),
+            PackedKeySorter.pack(false, 1, now - 1, true)));
+    }
+}
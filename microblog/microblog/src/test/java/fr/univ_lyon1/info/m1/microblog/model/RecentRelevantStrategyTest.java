@@ -19,15 +19,15 @@ class RecentRelevantStrategyTest {
         // Setting scores and creation dates
         MessageData data1 = msg1.getMessageData(null);
         data1.setScore(10);
-        msg1.getDateCreated().setTime(System.currentTimeMillis() - 1000); // Recent (1 second ago)
+        msg1.setCreatedAt(System.currentTimeMillis() - 1000); // Recent (1 second ago)
 
         MessageData data2 = msg2.getMessageData(null);
         data2.setScore(-1); // Below threshold
-        msg2.getDateCreated().setTime(System.currentTimeMillis() - 1000000000); // Old
+        msg2.setCreatedAt(System.currentTimeMillis() - 1000000000); // Old
 
         MessageData data3 = msg3.getMessageData(null);
         data3.setScore(5);
-        msg3.getDateCreated().setTime(System.currentTimeMillis() - 2000); // Recent (2 seconds ago)
+        msg3.setCreatedAt(System.currentTimeMillis() - 2000); // Recent (2 seconds ago)
 
         messagesData.put(msg1, data1);
         messagesData.put(msg2, data2);
@@ -0,0 +1,88 @@
+package fr.univ_lyon1.info.m1.microblog.model;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class ScoringPipelineTest {
+
+    @Test
+    void testSumsStageContributions() {
+        Y model = new Y();
+        User user = model.createUser("foo");
+        Message shortMessage = new Message("Hi Java", user);
+        Message other = new Message("Java is a nice language", user);
+        model.addMessage(shortMessage);
+        model.addMessage(other);
+        model.toggleBookmark(shortMessage, user);
+
+        ScoringPipeline pipeline = ScoringPipeline.of(
+            new IndexedBookmarkScoring(model),
+            new RecentMessageBonusScoring(),
+            new LengthBasedScoring());
+        Map<Message, MessageData> data = new LinkedHashMap<>();
+        data.put(shortMessage, shortMessage.peekMessageData(user).snapshot());
+        data.put(other, other.peekMessageData(user).snapshot());
+
+        pipeline.computeScores(user, data);
+
+        // bookmark (2 words) + recent (2) + short (1)
+        assertThat(data.get(shortMessage).getScore(), is(5));
+        // bookmark ("java") + recent (2)
+        assertThat(data.get(other).getScore(), is(3));
+    }
+
+    @Test
+    void testCountersAccumulateOverRuns() {
+        ScoringPipeline pipeline = ScoringPipeline.of(
+            new RecentMessageBonusScoring(), new LengthBasedScoring());
+        Map<Message, MessageData> data = new LinkedHashMap<>();
+        data.put(new Message("Short"), new MessageData());
+        data.put(new Message("Short too"), new MessageData());
+
+        pipeline.computeScores(null, data);
+        pipeline.computeScores(null, data);
+
+        assertThat(pipeline.getStageCalls(0), is(4L));
+        // The length stage is stateless: the second run reuses its results
+        assertThat(pipeline.getStageCalls(1), is(2L));
+        assertThat(data.get(data.keySet().iterator().next()).getScore(), is(3));
+
+        pipeline.resetCounters();
+        assertThat(pipeline.getStageNanos(0), is(0L));
+    }
+
+    @Test
+    void testStatelessStageIsNotCalledAgain() {
+        int[] calls = new int[1];
+        ScoringStage counting = new ScoringStage() {
+            @Override
+            public int contribution(final User user, final Message message,
+                    final MessageData data) {
+                calls[0]++;
+                return message.getContent().length();
+            }
+
+            @Override
+            public boolean isStateless() {
+                return true;
+            }
+        };
+        ScoringPipeline pipeline = ScoringPipeline.of(counting);
+        Message message = new Message("Hello");
+        Map<Message, MessageData> first = new LinkedHashMap<>();
+        first.put(message, new MessageData());
+        Map<Message, MessageData> second = new LinkedHashMap<>();
+        second.put(message, new MessageData());
+
+        pipeline.computeScores(null, first);
+        pipeline.computeScores(null, second);
+
+        assertThat(calls[0], is(1));
+        assertThat(second.get(message).getScore(), is(5));
+    }
+}
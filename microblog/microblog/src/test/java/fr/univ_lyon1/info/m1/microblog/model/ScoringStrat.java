@@ -55,11 +55,11 @@ class ScoringStrategiesTest {
         Message oldMessage = new Message("Old message");
 
         // Adjust dates for testing
-        recentMessage1.getDateCreated().setTime(
+        recentMessage1.setCreatedAt(
                 System.currentTimeMillis() - 5 * 60 * 60 * 1000); // 5 hours ago
-        recentMessage2.getDateCreated().setTime(
+        recentMessage2.setCreatedAt(
                 System.currentTimeMillis() - 3 * 24 * 60 * 60 * 1000); // 3 days ago
-        oldMessage.getDateCreated().setTime(
+        oldMessage.setCreatedAt(
                 System.currentTimeMillis() - 10 * 24 * 60 * 60 * 1000); // 10 days ago
 
         messagesData.put(recentMessage1, new MessageData());
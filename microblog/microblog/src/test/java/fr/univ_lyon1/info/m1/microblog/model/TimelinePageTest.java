@@ -0,0 +1,181 @@
+package fr.univ_lyon1.info.m1.microblog.model;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TimelinePageTest {
+
+    private Y model;
+    private User user;
+    private Map<Message, MessageData> data;
+
+    @BeforeEach
+    void setUp() {
+        model = new Y();
+        user = model.createUser("user");
+        data = new HashMap<>();
+    }
+
+    private Message add(final String content, final long createdAt, final int score) {
+        Message m = new Message(content, user);
+        m.setCreatedAt(createdAt);
+        model.addMessage(m);
+        MessageData d = new MessageData();
+        d.setScore(score);
+        data.put(m, d);
+        return m;
+    }
+
+    // Reads all the pages of a timeline
+    private List<Message> readAll(final DisplayStrategy strategy, final int pageSize) {
+        List<Message> all = new ArrayList<>();
+        String cursor = null;
+        do {
+            // Like the controller: only the chosen messages are given
+            Set<Message> selected = new HashSet<>(
+                strategy.selectCandidates(model, cursor, pageSize));
+            Map<Message, MessageData> candidates = new LinkedHashMap<>();
+            for (Map.Entry<Message, MessageData> e : data.entrySet()) {
+                if (selected.contains(e.getKey())) {
+                    candidates.put(e.getKey(), e.getValue());
+                }
+            }
+            TimelinePage page = strategy.filterAndSortPage(candidates, cursor, pageSize);
+            assertThat(page.getMessages().size() <= pageSize, is(true));
+            all.addAll(page.getMessages().keySet());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return all;
+    }
+
+    @Test
+    void testChronologicalPagesFollowTheTimeIndex() {
+        Message m3 = add("third", 3000, 0);
+        Message m1 = add("first", 1000, 0);
+        Message m2 = add("second", 2000, 0);
+        Message m4 = add("fourth", 4000, 0);
+        ChronologicalStrategy strategy = new ChronologicalStrategy();
+
+        TimelinePage first = strategy.filterAndSortPage(data, null, 2);
+
+        assertThat(first.getMessages().keySet(), contains(m4, m3));
+        assertThat(first.hasMore(), is(true));
+        TimelinePage second = strategy.filterAndSortPage(data,
+            first.getNextCursor(), 2);
+        assertThat(second.getMessages().keySet(), contains(m2, m1));
+        assertThat(second.getNextCursor(), is(nullValue()));
+    }
+
+    @Test
+    void testCursorIsNotShiftedByEarlierChanges() {
+        Message m1 = add("first", 1000, 0);
+        add("second", 2000, 0);
+        Message m3 = add("third", 3000, 0);
+        ChronologicalStrategy strategy = new ChronologicalStrategy();
+        TimelinePage first = strategy.filterAndSortPage(data, null, 2);
+
+        // A message deleted and another added before the cursor
+        model.deleteMessage(m3);
+        data.remove(m3);
+        add("fourth", 4000, 0);
+
+        TimelinePage second = strategy.filterAndSortPage(data,
+            first.getNextCursor(), 2);
+        assertThat(second.getMessages().keySet(), contains(m1));
+    }
+
+    @Test
+    void testScoredPagesMatchTheFullOrder() {
+        for (int i = 0; i < 50; i++) {
+            // Many ties on both the score and the date
+            add("message " + i, 1000 * (i % 7), i % 5 - 1);
+        }
+        DisplayStrategy[] strategies = {
+            new ChronologicalStrategy(), new MostRelevantStrategy(), new RecentRelevantStrategy()
+        };
+        for (DisplayStrategy strategy : strategies) {
+            List<Message> paged = readAll(strategy, 7);
+            LinkedHashMap<Message, MessageData> full = strategy.filterAndSortMessages(data);
+
+            assertThat(strategy.toString(), paged.size(), is(full.size()));
+            assertThat(strategy.toString(), new HashSet<>(paged),
+                is(full.keySet()));
+            // Same order, except between messages with the same sort key
+            for (int i = 1; i < paged.size(); i++) {
+                Message before = paged.get(i - 1);
+                Message after = paged.get(i);
+                int c = Long.compare(position(strategy, before), position(strategy, after));
+                assertThat(strategy.toString(), c < 0 || c == 0
+                    && before.getId() < after.getId(), is(true));
+            }
+        }
+    }
+
+    @Test
+    void testShownUpToMatchesTheLoadedPages() {
+        for (int i = 0; i < 30; i++) {
+            add("message " + i, 1000 * (i % 7), i % 5 - 1);
+        }
+        DisplayStrategy[] strategies = {
+            new ChronologicalStrategy(), new MostRelevantStrategy(), new RecentRelevantStrategy()
+        };
+        for (DisplayStrategy strategy : strategies) {
+            TimelinePage first = strategy.filterAndSortPage(data, null, 7);
+            for (Map.Entry<Message, MessageData> e : data.entrySet()) {
+                boolean loaded = first.getMessages().containsKey(e.getKey());
+                assertThat(strategy.toString(), strategy.isShownUpTo(e.getKey(),
+                    e.getValue(), first.getNextCursor()), is(loaded));
+            }
+        }
+    }
+
+    // Rank of a message in the full order of a strategy, ties merged
+    private long position(final DisplayStrategy strategy, final Message m) {
+        MessageData d = data.get(m);
+        if (strategy instanceof ChronologicalStrategy) {
+            return -m.getCreatedAt();
+        }
+        long score = (strategy instanceof MostRelevantStrategy && d.isBookmarked()
+            ? 1L << 40 : 0) + d.getScore();
+        return -(score << 20) - m.getCreatedAt();
+    }
+
+    @Test
+    void testDefaultPagingResumesAfterTheLastMessage() {
+        Message m1 = add("a", 1000, 0);
+        Message m2 = add("b", 2000, 0);
+        Message m3 = add("c", 3000, 0);
+        DisplayStrategy insertionOrder = messagesData -> messagesData.entrySet().stream();
+        Map<Message, MessageData> ordered = new LinkedHashMap<>();
+        ordered.put(m2, data.get(m2));
+        ordered.put(m1, data.get(m1));
+        ordered.put(m3, data.get(m3));
+        data = ordered;
+
+        List<Message> all = readAll(insertionOrder, 2);
+
+        assertThat(all, contains(m2, m1, m3));
+    }
+
+    @Test
+    void testInvalidCursorIsRejected() {
+        add("a", 1000, 0);
+
+        assertThrows(IllegalArgumentException.class, () ->
+            new MostRelevantStrategy().filterAndSortPage(data, "not a cursor", 2));
+    }
+}
@@ -0,0 +1,53 @@
+package fr.univ_lyon1.info.m1.microblog.model;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TranslationCacheTest {
+
+    @Test
+    void testHitsAndMisses() {
+        TranslationCache cache = new TranslationCache();
+
+        assertThat(cache.get("Hello", "eng", "fra"), is(nullValue()));
+        cache.put("Hello", "eng", "fra", "Bonjour");
+
+        assertThat(cache.get("Hello", "eng", "fra"), is("Bonjour"));
+        assertThat(cache.get("Hello", "eng", "spa"), is(nullValue()));
+        assertThat(cache.getHits(), is(1L));
+        assertThat(cache.getMisses(), is(2L));
+    }
+
+    @Test
+    void testLeastRecentlyUsedEvicted() {
+        TranslationCache cache = new TranslationCache(10, null);
+        cache.put("a", "eng", "fra", "aaaa");
+        cache.put("b", "eng", "fra", "bbbb");
+        cache.get("a", "eng", "fra");
+
+        cache.put("c", "eng", "fra", "cccc");
+
+        assertThat(cache.size(), is(2));
+        assertThat(cache.get("a", "eng", "fra"), is("aaaa"));
+        assertThat(cache.get("b", "eng", "fra"), is(nullValue()));
+        assertThat(cache.get("c", "eng", "fra"), is("cccc"));
+    }
+
+    @Test
+    void testDiskTierSurvivesRestart(@TempDir final Path dir) {
+        new TranslationCache(100, dir).put("Hello", "eng", "fra", "Bonjour");
+
+        TranslationCache restarted = new TranslationCache(100, dir);
+
+        assertThat(restarted.get("Hello", "eng", "fra"), is("Bonjour"));
+        assertThat(restarted.getDiskHits(), is(1L));
+        assertThat(restarted.get("Hello", "eng", "fra"), is("Bonjour"));
+        assertThat(restarted.getMemoryHits(), is(1L));
+    }
+}
@@ -0,0 +1,135 @@
+package fr.univ_lyon1.info.m1.microblog.model;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TranslationPrefetcherTest {
+
+    private TranslationRoutePlanner planner;
+    private TranslationService service;
+    private Map<String, CompletableFuture<String>> requests;
+    private User user;
+    private List<Message> messages;
+
+    @BeforeEach
+    void setUp() {
+        planner = mock(TranslationRoutePlanner.class);
+        service = mock(TranslationService.class);
+        requests = new HashMap<>();
+        when(service.hasFreeSlot()).thenReturn(true);
+        when(planner.translate(anyString(), eq("eng"), eq("fra"))).thenAnswer(inv -> {
+            CompletableFuture<String> f = new CompletableFuture<>();
+            requests.put(inv.getArgument(0), f);
+            return f;
+        });
+        user = new User("alice");
+        messages = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            messages.add(new Message("Message " + i, user));
+        }
+    }
+
+    private TranslationPrefetcher prefetcher(final int budget, final int maxQueue) {
+        return new TranslationPrefetcher(planner, service, "eng", budget, maxQueue);
+    }
+
+    @Test
+    void testRespectsBudget() {
+        TranslationPrefetcher prefetcher = prefetcher(2, 10);
+
+        prefetcher.setVisible("pane", user, messages);
+
+        assertThat(prefetcher.getRunningCount(), is(2));
+        assertThat(prefetcher.getQueueSize(), is(3));
+
+        // Each completion starts the next waiting message
+        requests.get("Message 0").complete("Message 0 fr");
+        assertThat(prefetcher.getRunningCount(), is(2));
+        assertThat(prefetcher.getQueueSize(), is(2));
+        assertThat(prefetcher.getPrefetchedCount(), is(1L));
+        verify(planner).translate("Message 2", "eng", "fra");
+    }
+
+    @Test
+    void testQueueIsBounded() {
+        TranslationPrefetcher prefetcher = prefetcher(1, 2);
+
+        prefetcher.setVisible("pane", user, messages);
+
+        // Messages 0 to 2 were dropped as the oldest waiting, 3 runs
+        assertThat(prefetcher.getQueueSize(), is(1));
+        requests.get("Message 3").complete("ok");
+        verify(planner).translate("Message 4", "eng", "fra");
+        verify(planner, never()).translate("Message 0", "eng", "fra");
+    }
+
+    @Test
+    void testOutOfViewIsCancelled() {
+        TranslationPrefetcher prefetcher = prefetcher(1, 10);
+        prefetcher.setVisible("pane", user, messages.subList(0, 3));
+        CompletableFuture<String> first = requests.get("Message 0");
+
+        // Scrolled down: messages 0 to 2 left the viewport
+        prefetcher.setVisible("pane", user, messages.subList(3, 5));
+
+        assertThat(first.isCancelled(), is(true));
+        assertThat(prefetcher.getCancelledCount(), is(1L));
+        assertThat(prefetcher.getQueueSize(), is(1));
+        verify(planner).translate("Message 3", "eng", "fra");
+        verify(planner, never()).translate("Message 1", "eng", "fra");
+    }
+
+    @Test
+    void testVisibleInAnotherScopeIsKept() {
+        TranslationPrefetcher prefetcher = prefetcher(1, 10);
+        prefetcher.setVisible("pane 1", user, messages.subList(0, 1));
+        prefetcher.setVisible("pane 2", user, messages.subList(0, 1));
+
+        prefetcher.setVisible("pane 1", user, Collections.emptyList());
+
+        assertThat(requests.get("Message 0").isCancelled(), is(false));
+    }
+
+    @Test
+    void testSkipsTranslatedAndPrefetchedMessages() {
+        TranslationPrefetcher prefetcher = prefetcher(1, 10);
+        messages.get(1).setTranslatedContent("Déjà traduit", user);
+        List<Message> visible = Arrays.asList(messages.get(0), messages.get(1));
+
+        prefetcher.setVisible("pane", user, visible);
+        requests.get("Message 0").complete("ok");
+        prefetcher.setVisible("pane", user, visible);
+
+        verify(planner, times(1)).translate(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void testWaitsWhileServiceIsBusy() {
+        when(service.hasFreeSlot()).thenReturn(false);
+        TranslationPrefetcher prefetcher = prefetcher(1, 10);
+
+        prefetcher.setVisible("pane", user, messages);
+
+        assertThat(prefetcher.getRunningCount(), is(0));
+        assertThat(prefetcher.getQueueSize(), is(5));
+        verify(planner, never()).translate(anyString(), anyString(), anyString());
+    }
+}
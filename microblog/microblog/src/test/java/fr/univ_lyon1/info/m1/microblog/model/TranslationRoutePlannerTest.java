@@ -0,0 +1,71 @@
+package fr.univ_lyon1.info.m1.microblog.model;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TranslationRoutePlannerTest {
+
+    private TranslationService service;
+    private TranslationRoutePlanner planner;
+
+    @BeforeEach
+    void setUp() {
+        Map<String, Set<String>> pairs = new HashMap<>();
+        pairs.put("eng", new HashSet<>(Arrays.asList("spa", "cat")));
+        pairs.put("spa", new HashSet<>(Arrays.asList("fra", "eng", "cat")));
+        pairs.put("cat", new HashSet<>(Arrays.asList("spa", "oci")));
+        service = mock(TranslationService.class);
+        when(service.listPairs()).thenReturn(CompletableFuture.completedFuture(pairs));
+        planner = new TranslationRoutePlanner(service);
+    }
+
+    @Test
+    void testDirectPair() throws Exception {
+        assertThat(planner.route("eng", "spa").get(), contains("eng", "spa"));
+    }
+
+    @Test
+    void testShortestPivot() throws Exception {
+        assertThat(planner.route("eng", "fra").get(), contains("eng", "spa", "fra"));
+        assertThat(planner.route("eng", "oci").get(), contains("eng", "cat", "oci"));
+        assertThat(planner.route("fra", "fra").get(), contains("fra"));
+    }
+
+    @Test
+    void testNoRoute() {
+        assertThrows(ExecutionException.class, () -> planner.route("fra", "eng").get());
+    }
+
+    @Test
+    void testPairsFetchedOnce() throws Exception {
+        planner.route("eng", "fra").get();
+        planner.route("cat", "eng").get();
+
+        verify(service, times(1)).listPairs();
+    }
+
+    @Test
+    void testTranslateUsesRoute() throws Exception {
+        when(service.translateVia("Hello", Arrays.asList("eng", "spa", "fra")))
+            .thenReturn(CompletableFuture.completedFuture("Bonjour"));
+
+        assertThat(planner.translate("Hello", "eng", "fra").get(), is("Bonjour"));
+    }
+}
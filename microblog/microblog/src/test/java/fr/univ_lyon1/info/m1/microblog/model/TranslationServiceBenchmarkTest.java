@@ -0,0 +1,146 @@
+package fr.univ_lyon1.info.m1.microblog.model;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ServerSocketFactory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Throughput of the translation clients against a local stand-in for the
+ * Apertium API answering after a fixed latency. Run with
+ * {@code mvn test -P benchmark}.
+ */
+@Tag("benchmark")
+class TranslationServiceBenchmarkTest {
+
+    private static final int REQUESTS = 200;
+    private static final int LATENCY_MS = 5;
+
+    private MockWebServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(final RecordedRequest request)
+                    throws InterruptedException {
+                Thread.sleep(LATENCY_MS);
+                return new MockResponse().setResponseCode(200)
+                    .setBody("{\"responseData\": {\"translatedText\": \"ok\"}}");
+            }
+        });
+        // Like a real server, answer without waiting for delayed ACKs (Nagle)
+        server.setServerSocketFactory(new NoDelayServerSocketFactory());
+        server.start();
+        ApertiumApiClient.setBaseUrl(server.url("/").toString());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    /**
+     * Creates server sockets whose connections have TCP_NODELAY set.
+     */
+    private static final class NoDelayServerSocketFactory extends ServerSocketFactory {
+        @Override
+        public ServerSocket createServerSocket() throws IOException {
+            return new ServerSocket() {
+                @Override
+                public Socket accept() throws IOException {
+                    Socket socket = super.accept();
+                    socket.setTcpNoDelay(true);
+                    return socket;
+                }
+            };
+        }
+
+        @Override
+        public ServerSocket createServerSocket(final int port) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ServerSocket createServerSocket(final int port, final int backlog)
+                throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ServerSocket createServerSocket(final int port, final int backlog,
+                final InetAddress address) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static List<String> texts(final int distinct) {
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            texts.add("message " + (i % distinct));
+        }
+        return texts;
+    }
+
+    private static void report(final String name, final long start, final int count) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-40s %5d requests in %6.3f s: %8.1f req/s%n",
+            name, count, seconds, count / seconds);
+    }
+
+    @Test
+    void benchmarkClients() throws Exception {
+        // Baseline: a new client for every request, as the client used to do
+        long start = System.nanoTime();
+        for (String text : texts(REQUESTS)) {
+            HttpRequest request = HttpRequest.newBuilder()
+                .uri(ApertiumApiClient.requestUri(text, "eng", "fra")).GET().build();
+            HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString());
+        }
+        report("new client per request", start, REQUESTS);
+
+        start = System.nanoTime();
+        for (String text : texts(REQUESTS)) {
+            ApertiumApiClient.translate(text, "eng", "fra");
+        }
+        report("shared client, sequential", start, REQUESTS);
+
+        TranslationService service = new TranslationService(8, Duration.ofSeconds(30),
+            new TranslationCache(0, null));
+        start = System.nanoTime();
+        List<String> result = service.translateAll(texts(REQUESTS), "eng", "fra")
+            .get(60, TimeUnit.SECONDS);
+        report("shared client, batch of 8 in flight", start, REQUESTS);
+        assertThat(result.size(), is(REQUESTS));
+
+        int before = server.getRequestCount();
+        start = System.nanoTime();
+        service.translateAll(texts(20), "eng", "fra").get(60, TimeUnit.SECONDS);
+        report("batch with duplicates (20 distinct)", start, REQUESTS);
+        System.out.println("HTTP requests sent for the batch with duplicates: "
+            + (server.getRequestCount() - before));
+    }
+}
@@ -0,0 +1,270 @@
+package fr.univ_lyon1.info.m1.microblog.model;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+class TranslationServiceTest {
+
+    private MockWebServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        ApertiumApiClient.setBaseUrl(server.url("/").toString());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    private static MockResponse translation(final String text) {
+        return new MockResponse()
+                .setBody("{\"responseData\": {\"translatedText\": \"" + text + "\"}}")
+                .setResponseCode(200);
+    }
+
+    @Test
+    void testPivotTranslation() throws Exception {
+        server.enqueue(translation("Hola").setBodyDelay(100, TimeUnit.MILLISECONDS));
+        server.enqueue(translation("Bonjour"));
+        TranslationService service = new TranslationService();
+
+        CompletableFuture<String> result =
+            service.translateVia("Hello", Arrays.asList("eng", "spa", "fra"));
+
+        assertThat(result.get(5, TimeUnit.SECONDS), is("Bonjour"));
+        String first = server.takeRequest().getPath();
+        String second = server.takeRequest().getPath();
+        assertThat(first, containsString("q=Hello"));
+        assertThat(first, containsString("langpair=eng%7Cspa"));
+        assertThat(second, containsString("q=Hola"));
+        assertThat(second, containsString("langpair=spa%7Cfra"));
+    }
+
+    @Test
+    void testInFlightCap() throws Exception {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(final RecordedRequest request)
+                    throws InterruptedException {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                Thread.sleep(100);
+                inFlight.decrementAndGet();
+                return translation("ok");
+            }
+        });
+        TranslationService service = new TranslationService(2, Duration.ofSeconds(5));
+
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            results.add(service.translate("text " + i, "eng", "fra"));
+        }
+
+        for (CompletableFuture<String> r : results) {
+            assertThat(r.get(5, TimeUnit.SECONDS), is("ok"));
+        }
+        assertThat(maxInFlight.get(), lessThanOrEqualTo(2));
+        assertThat(server.getRequestCount(), is(6));
+    }
+
+    @Test
+    void testTimeout() {
+        server.enqueue(translation("Trop tard").setBodyDelay(2, TimeUnit.SECONDS));
+        TranslationService service = new TranslationService(1, Duration.ofMillis(200));
+
+        CompletableFuture<String> result = service.translate("Hello", "eng", "fra");
+
+        assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testHttpError() {
+        server.enqueue(new MockResponse().setResponseCode(500));
+        TranslationService service = new TranslationService();
+
+        CompletableFuture<String> result = service.translate("Hello", "eng", "fra");
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+            () -> result.get(5, TimeUnit.SECONDS));
+        assertThat(e.getCause(), instanceOf(IOException.class));
+    }
+
+    @Test
+    void testCachedTranslationIsNotRequestedAgain() throws Exception {
+        server.enqueue(translation("Bonjour"));
+        TranslationService service = new TranslationService();
+
+        assertThat(service.translate("Hello", "eng", "fra").get(5, TimeUnit.SECONDS),
+            is("Bonjour"));
+        assertThat(service.translate("Hello", "eng", "fra").get(5, TimeUnit.SECONDS),
+            is("Bonjour"));
+
+        assertThat(server.getRequestCount(), is(1));
+        assertThat(service.getCache().getHits(), is(1L));
+    }
+
+    @Test
+    void testCacheIsReadOffTheCallingThread() throws Exception {
+        List<Thread> readers = new ArrayList<>();
+        TranslationCache cache = new TranslationCache() {
+            @Override
+            public String get(final String text, final String sourceLang,
+                    final String targetLang) {
+                synchronized (readers) {
+                    readers.add(Thread.currentThread());
+                }
+                return super.get(text, sourceLang, targetLang);
+            }
+        };
+        cache.put("Hello", "eng", "fra", "Bonjour");
+        TranslationService service = new TranslationService(1, Duration.ofSeconds(5), cache);
+
+        assertThat(service.translate("Hello", "eng", "fra").get(5, TimeUnit.SECONDS),
+            is("Bonjour"));
+
+        synchronized (readers) {
+            assertThat(readers.size(), is(1));
+            assertThat(readers.get(0) == Thread.currentThread(), is(false));
+        }
+        assertThat(server.getRequestCount(), is(0));
+    }
+
+    @Test
+    void testDuplicateRequestsAreCoalesced() throws Exception {
+        server.enqueue(translation("Bonjour").setBodyDelay(200, TimeUnit.MILLISECONDS));
+        TranslationService service = new TranslationService(1, Duration.ofSeconds(5),
+            new TranslationCache(0, null));
+
+        CompletableFuture<String> first = service.translate("Hello", "eng", "fra");
+        CompletableFuture<String> second = service.translate("Hello", "eng", "fra");
+
+        assertThat(first.get(5, TimeUnit.SECONDS), is("Bonjour"));
+        assertThat(second.get(5, TimeUnit.SECONDS), is("Bonjour"));
+        assertThat(server.getRequestCount(), is(1));
+    }
+
+    @Test
+    void testCancelledRequestsKeepTheirSlotUntilTheCallEnds() throws Exception {
+        CountDownLatch slow = new CountDownLatch(1);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(final RecordedRequest request)
+                    throws InterruptedException {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                try {
+                    if (request.getPath().contains("q=slow")) {
+                        slow.await(5, TimeUnit.SECONDS);
+                    }
+                    return translation("ok");
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+        });
+        TranslationService service = new TranslationService(1, Duration.ofSeconds(5),
+            new TranslationCache(0, null), Runnable::run);
+        CompletableFuture<String> sent = service.translateVia("slow",
+            Arrays.asList("eng", "spa", "fra"));
+        CompletableFuture<String> queued = service.translate("queued", "eng", "fra");
+        assertThat(service.hasFreeSlot(), is(false));
+
+        queued.cancel(false);
+        sent.cancel(false);
+        CompletableFuture<String> next = service.translate("next", "eng", "fra");
+        slow.countDown();
+
+        assertThat(next.get(5, TimeUnit.SECONDS), is("ok"));
+        assertThat(maxInFlight.get(), is(1));
+        assertThat(service.hasFreeSlot(), is(true));
+        List<String> paths = new ArrayList<>();
+        for (int i = server.getRequestCount(); i > 0; i--) {
+            paths.add(server.takeRequest().getPath());
+        }
+        assertThat(paths, contains(containsString("q=slow"), containsString("q=next")));
+    }
+
+    @Test
+    void testSharedRequestSurvivesOneCancellation() throws Exception {
+        server.enqueue(translation("Bonjour").setBodyDelay(200, TimeUnit.MILLISECONDS));
+        TranslationService service = new TranslationService(1, Duration.ofSeconds(5),
+            new TranslationCache(0, null));
+
+        CompletableFuture<String> first = service.translate("Hello", "eng", "fra");
+        CompletableFuture<String> second = service.translate("Hello", "eng", "fra");
+        first.cancel(false);
+
+        assertThat(second.get(5, TimeUnit.SECONDS), is("Bonjour"));
+        assertThat(server.getRequestCount(), is(1));
+    }
+
+    @Test
+    void testTranslateAll() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(final RecordedRequest request) {
+                String path = request.getPath();
+                if (path.contains("q=broken")) {
+                    return new MockResponse().setResponseCode(500);
+                }
+                return translation(path.contains("q=one") ? "un" : "deux");
+            }
+        });
+        TranslationService service = new TranslationService();
+
+        List<String> result = service.translateAll(
+            Arrays.asList("one", "two", "broken", "one"), "eng", "fra")
+            .get(5, TimeUnit.SECONDS);
+
+        assertThat(result, contains("un", "deux", null, "un"));
+        assertThat(server.getRequestCount(), is(3));
+    }
+
+    @Test
+    void testListPairs() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(200).setBody("{\"responseData\": ["
+            + "{\"sourceLanguage\": \"eng\", \"targetLanguage\": \"spa\"},"
+            + "{\"sourceLanguage\": \"eng\", \"targetLanguage\": \"cat\"},"
+            + "{\"sourceLanguage\": \"spa\", \"targetLanguage\": \"fra\"}]}"));
+        TranslationService service = new TranslationService();
+
+        Map<String, Set<String>> pairs = service.listPairs().get(5, TimeUnit.SECONDS);
+
+        assertThat(pairs.get("eng"), containsInAnyOrder("spa", "cat"));
+        assertThat(pairs.get("spa"), contains("fra"));
+        assertThat(server.takeRequest().getPath(), is("/listPairs"));
+    }
+}
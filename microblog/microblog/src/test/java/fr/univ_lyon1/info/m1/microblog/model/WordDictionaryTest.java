@@ -0,0 +1,36 @@
+package fr.univ_lyon1.info.m1.microblog.model;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+import org.junit.jupiter.api.Test;
+
+class WordDictionaryTest {
+
+    @Test
+    void testTokenizeIsSortedAndDistinct() {
+        int[] ids = WordDictionary.tokenize("Hello hello, world world world.");
+
+        assertThat(ids.length, is(2));
+        assertThat(ids[0] < ids[1], is(true));
+        assertThat(ids[0] == WordDictionary.intern("hello")
+            || ids[0] == WordDictionary.intern("world"), is(true));
+    }
+
+    @Test
+    void testSameWordSameId() {
+        int id = WordDictionary.intern("java");
+
+        assertThat(WordDictionary.intern("java"), is(id));
+        assertThat(WordDictionary.word(id), is("java"));
+    }
+
+    @Test
+    void testMessageTokenizedOnce() {
+        Message m = new Message("Java is powerful.");
+
+        assertThat(m.getWordIds(), is(sameInstance(m.getWordIds())));
+        assertThat(m.getWordIds().length, is(3));
+    }
+}
@@ -8,9 +8,11 @@ import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.is;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -65,16 +67,6 @@ class YTest {
         assertThat(messages.get(0).getContent(), is("Hello, world!"));
     }
 
-    @Test
-    void testFetchAdditionalMessages() {
-        User user = model.createUser("foo");
-        List<Message> newMessages = model.fetchAdditionalMessages(user, 3);
-
-        assertThat(newMessages.size(), is(3));
-        assertThat(newMessages.get(0).getContent(), is("Additional message 1"));
-        assertThat(model.getMessages().size(), is(3));
-    }
-
     @Test
     void testGetMessagesData() {
         User user = model.createUser("foo");
@@ -110,4 +102,73 @@ class YTest {
 
         verify(listener, times(1)).onModelUpdated(anyList(), anyList());
     }
+
+    @Test
+    void testUpdateCoalescesNotifications() {
+        IModelListener listener = mock(IModelListener.class);
+        model.registerListener(listener);
+
+        model.beginUpdate();
+        model.addMessage(new TextMessage("First"));
+        model.beginUpdate();
+        model.addMessage(new TextMessage("Second"));
+        model.endUpdate();
+        model.notifyListeners();
+        verify(listener, never()).onModelUpdated(anyList(), anyList());
+
+        model.endUpdate();
+        verify(listener, times(1)).onModelUpdated(anyList(), anyList());
+    }
+
+    @Test
+    void testDeltaListenerGetsTheChanges() {
+        User user = model.createUser("foo");
+        Message kept = new TextMessage("Kept", user);
+        Message deleted = new TextMessage("Deleted", user);
+        IModelDeltaListener listener = mock(IModelDeltaListener.class);
+        model.registerListener(listener);
+        ArgumentCaptor<List<ModelChange>> changes = ArgumentCaptor.forClass(List.class);
+
+        model.beginUpdate();
+        model.addMessage(kept);
+        model.addMessage(deleted);
+        model.deleteMessage(deleted);
+        model.toggleBookmark(kept, user);
+        model.endUpdate();
+
+        verify(listener, times(1)).onModelChanged(changes.capture());
+        verify(listener, never()).onModelUpdated(anyList(), anyList());
+        assertThat(changes.getValue().toString(), is("[MESSAGE_ADDED #" + kept.getId()
+            + ", MESSAGE_ADDED #" + deleted.getId() + ", MESSAGE_REMOVED #" + deleted.getId()
+            + ", DATA_CHANGED foo #" + kept.getId() + "]"));
+
+        // Nothing recorded: the whole model is sent
+        model.notifyListeners();
+        verify(listener, times(1)).onModelUpdated(anyList(), anyList());
+    }
+
+    @Test
+    void testVersions() {
+        User foo = model.createUser("foo");
+        User bar = model.createUser("bar");
+        Message message = new Message("Hello", foo);
+        long version = model.getVersion();
+
+        model.addMessage(message);
+        assertThat(model.getVersion() > version, is(true));
+        version = model.getVersion();
+        message.setCreatedAt(1000);
+        assertThat(model.getVersion() > version, is(true));
+
+        // Per-user changes leave the shared version and the other users alone
+        version = model.getVersion();
+        model.toggleBookmark(message, foo);
+        model.markDataChanged(message, foo);
+        assertThat(model.getUserVersion(foo), is(2L));
+        assertThat(model.getUserVersion(bar), is(0L));
+        assertThat(model.getVersion(), is(version));
+
+        model.deleteMessage(message);
+        assertThat(model.getVersion() > version, is(true));
+    }
 }
@@ -0,0 +1,89 @@
+package fr.univ_lyon1.info.m1.microblog.view;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class KeyedListDiffTest {
+
+    // Items are "key:version", only the key is used to match them
+    private static String key(final String item) {
+        return item.substring(0, item.indexOf(':'));
+    }
+
+    private static KeyedListDiff.Stats reconcile(final List<String> target,
+            final List<String> next) {
+        return KeyedListDiff.reconcile(target, next, KeyedListDiffTest::key,
+            (shown, item) -> !shown.equals(item));
+    }
+
+    @Test
+    void testOnlyTheChangedItemIsUpdated() {
+        List<String> shown = new ArrayList<>(Arrays.asList("a:1", "b:1", "c:1", "d:1"));
+        List<String> before = new ArrayList<>(shown);
+
+        KeyedListDiff.Stats stats = reconcile(shown, Arrays.asList("a:1", "b:2", "c:1", "d:1"));
+
+        assertThat(shown, is(Arrays.asList("a:1", "b:2", "c:1", "d:1")));
+        assertThat(stats.getUpdated(), is(1));
+        assertThat(stats.getInserted() + stats.getMoved() + stats.getRemoved(), is(0));
+        // The other items are the very same instances
+        assertThat(shown.get(0) == before.get(0), is(true));
+    }
+
+    @Test
+    void testMovesOnlyWhatLeftTheOrder() {
+        List<String> shown = new ArrayList<>(Arrays.asList("a:1", "b:1", "c:1", "d:1", "e:1"));
+
+        // "e" goes to the top, the rest keeps its relative order
+        KeyedListDiff.Stats stats = reconcile(shown,
+            Arrays.asList("e:1", "a:1", "b:1", "c:1", "d:1"));
+
+        assertThat(shown, is(Arrays.asList("e:1", "a:1", "b:1", "c:1", "d:1")));
+        assertThat(stats.getMoved(), is(1));
+        assertThat(stats.getUpdated(), is(0));
+    }
+
+    @Test
+    void testInsertsAndRemoves() {
+        List<String> shown = new ArrayList<>(Arrays.asList("a:1", "b:1", "c:1"));
+
+        KeyedListDiff.Stats stats = reconcile(shown, Arrays.asList("x:1", "a:1", "c:1", "y:1"));
+
+        assertThat(shown, is(Arrays.asList("x:1", "a:1", "c:1", "y:1")));
+        assertThat(stats.getInserted(), is(2));
+        assertThat(stats.getRemoved(), is(1));
+        assertThat(stats.getMoved(), is(0));
+    }
+
+    @Test
+    void testRandomOrders() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            List<String> pool = new ArrayList<>();
+            for (int i = 0; i < 30; i++) {
+                pool.add(i + ":" + random.nextInt(2));
+            }
+            Collections.shuffle(pool, random);
+            List<String> shown = new ArrayList<>(pool.subList(0, random.nextInt(30)));
+            Collections.shuffle(pool, random);
+            List<String> next = new ArrayList<>(pool.subList(0, random.nextInt(30)));
+            for (int i = 0; i < next.size(); i++) {
+                if (random.nextBoolean()) {
+                    next.set(i, key(next.get(i)) + ":" + random.nextInt(2));
+                }
+            }
+
+            reconcile(shown, next);
+
+            assertThat(shown, is(next));
+        }
+    }
+}